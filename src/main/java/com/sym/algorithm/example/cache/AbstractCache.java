@@ -0,0 +1,44 @@
+package com.sym.algorithm.example.cache;
+
+import com.sym.algorithm.example.cache.support.ConcurrentStatsCounter;
+
+import java.util.Objects;
+
+/**
+ * 抽象的缓存实现, 提供可选的统计功能.
+ * <p>
+ * 默认使用{@link StatsCounter#disabled()}, 调用{@link #recordStats()}以后才真正开始统计,
+ * 统计开关需要在使用缓存之前打开.
+ *
+ * @author shenyanming
+ * Created on 2021/2/3 16:05
+ */
+public abstract class AbstractCache<K, V> implements ICache<K, V> {
+
+    /**
+     * 统计信息记录器, 可能在构造以后被{@link #recordStats(StatsCounter)}替换,
+     * 而缓存会被多个线程读取, 所以用volatile保证替换后的记录器对所有线程可见
+     */
+    protected volatile StatsCounter statsCounter = StatsCounter.disabled();
+
+    /**
+     * 开启统计
+     */
+    public void recordStats() {
+        recordStats(new ConcurrentStatsCounter());
+    }
+
+    /**
+     * 使用指定的记录器开启统计, 多个缓存可以共用同一个记录器
+     *
+     * @param statsCounter 记录器
+     */
+    public void recordStats(StatsCounter statsCounter) {
+        this.statsCounter = Objects.requireNonNull(statsCounter, "记录器不能为空");
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+}
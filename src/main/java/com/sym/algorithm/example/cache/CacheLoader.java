@@ -0,0 +1,20 @@
+package com.sym.algorithm.example.cache;
+
+/**
+ * 缓存加载器, 缓存未命中时用它从数据源(例如数据库)加载值
+ *
+ * @author shenyanming
+ * Created on 2021/1/29 10:12
+ */
+@FunctionalInterface
+public interface CacheLoader<K, V> {
+
+    /**
+     * 加载键对应的值
+     *
+     * @param key 键
+     * @return 值, 返回null表示数据源中也不存在, 不会被缓存
+     * @throws Exception 加载失败
+     */
+    V load(K key) throws Exception;
+}
@@ -0,0 +1,177 @@
+package com.sym.algorithm.example.cache;
+
+/**
+ * 缓存统计信息的快照, 创建以后不可修改.
+ * <p>
+ * 两个快照相减({@link #minus(CacheStats)})可以得到一段时间内的增量, 例如每分钟采集一次快照,
+ * 和上一次的快照相减, 就能得到这一分钟的命中率.
+ *
+ * @author shenyanming
+ * Created on 2021/2/3 16:05
+ */
+public final class CacheStats {
+
+    private static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+
+    /**
+     * 加载的总耗时, 单位纳秒
+     */
+    private final long totalLoadTime;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount,
+                      long loadSuccessCount, long loadFailureCount, long totalLoadTime) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+    }
+
+    /**
+     * 所有计数都为0的快照
+     *
+     * @return stats
+     */
+    public static CacheStats empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 命中次数
+     *
+     * @return hitCount
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 未命中次数
+     *
+     * @return missCount
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * 淘汰次数, 包括容量不足时的淘汰和过期回收
+     *
+     * @return evictionCount
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 加载成功的次数
+     *
+     * @return loadSuccessCount
+     */
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * 加载失败的次数, 加载器抛出异常或者返回null都算失败
+     *
+     * @return loadFailureCount
+     */
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * 加载的总耗时, 单位纳秒
+     *
+     * @return totalLoadTime
+     */
+    public long totalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * 请求总数, 即命中数 + 未命中数
+     *
+     * @return requestCount
+     */
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * 命中率, 没有请求时返回1
+     *
+     * @return hitRate
+     */
+    public double hitRate() {
+        long requestCount = requestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * 未命中率, 没有请求时返回0
+     *
+     * @return missRate
+     */
+    public double missRate() {
+        long requestCount = requestCount();
+        return requestCount == 0 ? 0.0 : (double) missCount / requestCount;
+    }
+
+    /**
+     * 平均每次加载的耗时, 单位纳秒
+     *
+     * @return averageLoadPenalty
+     */
+    public double averageLoadPenalty() {
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     * 当前快照减去另一个快照, 得到两次快照之间的增量, 结果中的负数按0处理
+     *
+     * @param other 更早的快照
+     * @return 增量
+     */
+    public CacheStats minus(CacheStats other) {
+        return new CacheStats(
+                Math.max(0, hitCount - other.hitCount),
+                Math.max(0, missCount - other.missCount),
+                Math.max(0, evictionCount - other.evictionCount),
+                Math.max(0, loadSuccessCount - other.loadSuccessCount),
+                Math.max(0, loadFailureCount - other.loadFailureCount),
+                Math.max(0, totalLoadTime - other.totalLoadTime));
+    }
+
+    /**
+     * 两个快照相加, 例如汇总多个缓存的统计信息
+     *
+     * @param other 另一个快照
+     * @return 总和
+     */
+    public CacheStats plus(CacheStats other) {
+        return new CacheStats(
+                hitCount + other.hitCount,
+                missCount + other.missCount,
+                evictionCount + other.evictionCount,
+                loadSuccessCount + other.loadSuccessCount,
+                loadFailureCount + other.loadFailureCount,
+                totalLoadTime + other.totalLoadTime);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount
+                + ", evictionCount=" + evictionCount + ", loadSuccessCount=" + loadSuccessCount
+                + ", loadFailureCount=" + loadFailureCount + ", totalLoadTime=" + totalLoadTime + "}";
+    }
+}
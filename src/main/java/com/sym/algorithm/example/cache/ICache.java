@@ -1,5 +1,8 @@
 package com.sym.algorithm.example.cache;
 
+import java.util.Objects;
+import java.util.function.Function;
+
 /**
  * 缓存接口
  *
@@ -31,4 +34,50 @@ public interface ICache<K, V> {
      * @return 旧值, 若key不存在, 返回null
      */
     V remove(K key);
+
+    /**
+     * 只有当前的缓存值等于{@code oldValue}时, 才替换为{@code newValue}.
+     * 默认实现先读后写, 不保证原子性, 线程安全的缓存需要重写它
+     *
+     * @param key      键
+     * @param oldValue 期望的旧值
+     * @param newValue 新值
+     * @return true-替换成功, false-缓存值已经被修改或删除
+     */
+    default boolean replace(K key, V oldValue, V newValue) {
+        V current = get(key);
+        if (current == null || !Objects.equals(current, oldValue)) {
+            return false;
+        }
+        set(key, newValue);
+        return true;
+    }
+
+    /**
+     * 获取缓存值, 缓存不存在时通过{@code loader}加载并放入缓存.
+     * 默认实现不保证原子性, 多个线程同时未命中时会各自加载一次
+     *
+     * @param key    键
+     * @param loader 加载器
+     * @return 值, 加载器返回null时返回null
+     */
+    default V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                set(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 获取缓存的统计信息, 没有开启统计的缓存返回全0的快照
+     *
+     * @return 统计信息快照
+     */
+    default CacheStats stats() {
+        return CacheStats.empty();
+    }
 }
@@ -0,0 +1,27 @@
+package com.sym.algorithm.example.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支持过期时间的缓存接口
+ * <p>
+ * 1.存活时间(TTL, time to live): 从写入开始计算, 到期后无论是否被访问都会失效;
+ * 2.空闲时间(TTI, time to idle): 从最后一次访问开始计算, 一直不被访问就会失效.
+ * 两者同时设置时, 哪一个先到期就以哪一个为准.
+ *
+ * @author shenyanming
+ * Created on 2021/1/25 9:40
+ */
+public interface IExpirableCache<K, V> extends ICache<K, V> {
+
+    /**
+     * 新增或修改缓存信息, 并单独指定这一条缓存的过期时间
+     *
+     * @param key        键
+     * @param value      值
+     * @param timeToLive 存活时间, 小于等于0表示不限制
+     * @param timeToIdle 空闲时间, 小于等于0表示不限制
+     * @param unit       时间单位
+     */
+    void set(K key, V value, long timeToLive, long timeToIdle, TimeUnit unit);
+}
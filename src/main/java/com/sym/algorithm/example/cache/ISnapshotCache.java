@@ -0,0 +1,45 @@
+package com.sym.algorithm.example.cache;
+
+/**
+ * 支持导出和恢复快照的缓存, 用于重启后的缓存预热.
+ * <p>
+ * 导出时按照淘汰顺序(最先被淘汰的在前)遍历所有条目, 同时带上它的访问频率; 恢复时按照同样的顺序
+ * 逐条写回, 这样恢复后的缓存不仅数据相同, 淘汰顺序也和重启前一致.
+ *
+ * @author shenyanming
+ * Created on 2021/2/5 11:20
+ */
+public interface ISnapshotCache<K, V> extends ICache<K, V> {
+
+    /**
+     * 按照淘汰顺序遍历所有条目, 遍历不会改变条目的访问顺序
+     *
+     * @param consumer 条目消费者
+     */
+    void forEachEntry(EntryConsumer<? super K, ? super V> consumer);
+
+    /**
+     * 恢复一个条目, 它会成为同一访问频率下最近被访问的条目
+     *
+     * @param key       键
+     * @param value     值
+     * @param frequency 访问频率, 不关心频率的缓存会忽略它
+     */
+    void restore(K key, V value, int frequency);
+
+    /**
+     * 条目消费者
+     */
+    @FunctionalInterface
+    interface EntryConsumer<K, V> {
+
+        /**
+         * 消费一个条目
+         *
+         * @param key       键
+         * @param value     值
+         * @param frequency 访问频率
+         */
+        void accept(K key, V value, int frequency);
+    }
+}
@@ -0,0 +1,91 @@
+package com.sym.algorithm.example.cache;
+
+/**
+ * 缓存统计信息的记录器, 缓存在命中、未命中、淘汰和加载时调用它
+ *
+ * @author shenyanming
+ * Created on 2021/2/3 16:05
+ */
+public interface StatsCounter {
+
+    /**
+     * 记录命中
+     *
+     * @param count 命中次数
+     */
+    void recordHits(int count);
+
+    /**
+     * 记录未命中
+     *
+     * @param count 未命中次数
+     */
+    void recordMisses(int count);
+
+    /**
+     * 记录一次淘汰, 包括容量不足时的淘汰和过期
+     */
+    void recordEviction();
+
+    /**
+     * 记录一次成功的加载
+     *
+     * @param loadTime 加载耗时, 单位纳秒
+     */
+    void recordLoadSuccess(long loadTime);
+
+    /**
+     * 记录一次失败的加载
+     *
+     * @param loadTime 加载耗时, 单位纳秒
+     */
+    void recordLoadFailure(long loadTime);
+
+    /**
+     * 获取当前统计信息的快照
+     *
+     * @return 快照
+     */
+    CacheStats snapshot();
+
+    /**
+     * 什么也不记录的实现, 缓存默认使用它, 所以不开启统计时几乎没有额外开销
+     *
+     * @return 空实现
+     */
+    static StatsCounter disabled() {
+        return DisabledStatsCounter.INSTANCE;
+    }
+
+    /**
+     * 空实现
+     */
+    enum DisabledStatsCounter implements StatsCounter {
+        INSTANCE;
+
+        @Override
+        public void recordHits(int count) {
+        }
+
+        @Override
+        public void recordMisses(int count) {
+        }
+
+        @Override
+        public void recordEviction() {
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadTime) {
+        }
+
+        @Override
+        public void recordLoadFailure(long loadTime) {
+        }
+
+        @Override
+        public CacheStats snapshot() {
+            return CacheStats.empty();
+        }
+    }
+}
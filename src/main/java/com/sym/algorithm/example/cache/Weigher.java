@@ -0,0 +1,44 @@
+package com.sym.algorithm.example.cache;
+
+/**
+ * 计算缓存条目的权重, 例如值占用的字节数. 缓存按照权重之和而不是条目个数来限制容量.
+ * <p>
+ * 同一个键值对多次计算的权重必须相同, 因为缓存只在写入时计算一次权重, 之后都是增量维护总权重.
+ *
+ * @author shenyanming
+ * Created on 2021/1/27 15:20
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    /**
+     * 计算权重
+     *
+     * @param key   键
+     * @param value 值
+     * @return 权重, 不能小于0
+     */
+    int weigh(K key, V value);
+
+    /**
+     * 每个条目的权重都是1, 此时按权重限制容量等价于按条目个数限制容量
+     *
+     * @return weigher
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> Weigher<K, V> singleton() {
+        return (Weigher<K, V>) SingletonWeigher.INSTANCE;
+    }
+
+    /**
+     * 所有权重都为1的实现
+     */
+    enum SingletonWeigher implements Weigher<Object, Object> {
+        INSTANCE;
+
+        @Override
+        public int weigh(Object key, Object value) {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.sym.algorithm.example.cache.impl;
+
+import com.sym.algorithm.example.cache.AbstractCache;
+import com.sym.algorithm.example.cache.StatsCounter;
+
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分段加锁的线程安全 LRU 缓存.
+ * <p>
+ * {@link LruCache}底层是一个 access-order 的{@link java.util.LinkedHashMap}, 它的get()方法
+ * 会把节点移动到链表末尾, 也就是说读操作本身也是写操作, 多线程并发读就会把链表指针弄乱.
+ * 如果直接给整个缓存加一把锁, 所有线程都要排队, 并发度退化为1.
+ * <p>
+ * 这里参考JDK7 ConcurrentHashMap的分段锁思想: 根据key的哈希值将其映射到不同的段(segment),
+ * 每个段都是一个独立的{@link LruCache}, 由各自的锁保护. 访问不同段的线程互不竞争,
+ * 代价是 LRU 的淘汰顺序只在段内有效, 而不是全局精确的.
+ *
+ * @author shenyanming
+ * Created on 2021/1/20 14:12
+ */
+public class ConcurrentLruCache<K, V> extends AbstractCache<K, V> {
+
+    /**
+     * 默认的分段数量
+     */
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment<K, V>[] segments;
+
+    /**
+     * 用于定位段的掩码, 段的数量是2的幂次方, 所以可以用与运算代替取模
+     */
+    private final int segmentMask;
+
+    public ConcurrentLruCache(int capacity) {
+        this(capacity, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * 构造分段 LRU 缓存
+     *
+     * @param capacity         总容量, 会平均分配到每个段上
+     * @param concurrencyLevel 预期的并发线程数, 会向上取整为2的幂次方作为段的数量
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLruCache(int capacity, int concurrencyLevel) {
+        if (capacity <= 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("容量和并发度都必须大于0");
+        }
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && segmentCount < capacity) {
+            segmentCount <<= 1;
+        }
+        // 向上取整, 保证所有段的容量之和不小于总容量
+        int segmentCapacity = (capacity + segmentCount - 1) / segmentCount;
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentCapacity);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    @Override
+    public void set(K key, V value) {
+        Objects.requireNonNull(key, "键不能为空");
+        Objects.requireNonNull(value, "值不能为空");
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock();
+        try {
+            segment.cache.set(key, value);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        Objects.requireNonNull(key, "键不能为空");
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock();
+        try {
+            return segment.cache.get(key);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        Objects.requireNonNull(key, "键不能为空");
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock();
+        try {
+            return segment.cache.remove(key);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * 在段的锁内比较并替换, 是原子的
+     */
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(key, "键不能为空");
+        Objects.requireNonNull(newValue, "值不能为空");
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock();
+        try {
+            return segment.cache.replace(key, oldValue, newValue);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * 所有段共用同一个记录器, 记录器本身是线程安全的, 不需要持有段的锁
+     */
+    @Override
+    public void recordStats(StatsCounter statsCounter) {
+        super.recordStats(statsCounter);
+        for (Segment<K, V> segment : segments) {
+            segment.cache.recordStats(statsCounter);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < segments.length; i++) {
+            Segment<K, V> segment = segments[i];
+            segment.lock();
+            try {
+                sb.append(i == 0 ? "" : ", ").append(segment.cache);
+            } finally {
+                segment.unlock();
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        // 和HashMap一样, 将哈希码的高16位与低16位异或, 让高位也参与段的定位
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[h & segmentMask];
+    }
+
+    /**
+     * 段, 本身就是一把锁, 锁住的是它内部的{@link LruCache}
+     */
+    private static class Segment<K, V> extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        final transient LruCache<K, V> cache;
+
+        Segment(int capacity) {
+            this.cache = new LruCache<>(capacity);
+        }
+    }
+}
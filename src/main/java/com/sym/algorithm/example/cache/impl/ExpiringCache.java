@@ -0,0 +1,234 @@
+package com.sym.algorithm.example.cache.impl;
+
+import com.sym.algorithm.example.cache.AbstractCache;
+import com.sym.algorithm.example.cache.IExpirableCache;
+import com.sym.algorithm.example.cache.support.TimingWheel;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 支持过期时间(TTL/TTI)的 LRU 缓存.
+ * <p>
+ * 过期的缓存不是在每次访问时扫描出来的, 而是交给{@link TimingWheel}管理: 每条缓存本身就是
+ * 时间轮中的一个定时任务, 每次读写缓存前先推进一下时间轮, 把走过的桶里已经到期的缓存删除.
+ * 这样即使有上百万条缓存, 回收过期数据的均摊代价也是 O(1).
+ * <p>
+ * 时间轮的精度是一个tick(约1毫秒), 所以读取缓存时还会再精确地检查一次过期时间,
+ * 保证不会读到已经过期的值. 容量不足时按照 LRU 淘汰, 被淘汰的缓存同时从时间轮中取消.
+ *
+ * @author shenyanming
+ * Created on 2021/1/25 9:40
+ */
+public class ExpiringCache<K, V> extends AbstractCache<K, V> implements IExpirableCache<K, V> {
+
+    private final LruMap<K, V> map;
+    private final TimingWheel<Entry<K, V>> timingWheel;
+
+    /**
+     * 时钟, 单位纳秒
+     */
+    private final LongSupplier ticker;
+
+    /**
+     * 默认的存活时间和空闲时间, 单位纳秒, 0表示不限制
+     */
+    private final long defaultTimeToLive;
+    private final long defaultTimeToIdle;
+
+    /**
+     * 构造过期缓存
+     *
+     * @param capacity   最大容量
+     * @param timeToLive 默认的存活时间, 小于等于0表示不限制
+     * @param timeToIdle 默认的空闲时间, 小于等于0表示不限制
+     * @param unit       时间单位
+     */
+    public ExpiringCache(int capacity, long timeToLive, long timeToIdle, TimeUnit unit) {
+        this(capacity, timeToLive, timeToIdle, unit, System::nanoTime);
+    }
+
+    /**
+     * 构造过期缓存, 可以指定时钟, 方便测试时模拟时间的流逝
+     *
+     * @param ticker 返回当前时间的时钟, 单位纳秒
+     */
+    public ExpiringCache(int capacity, long timeToLive, long timeToIdle, TimeUnit unit, LongSupplier ticker) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("容量必须大于0, 当前值为: " + capacity);
+        }
+        Objects.requireNonNull(unit, "时间单位不能为空");
+        Objects.requireNonNull(ticker, "时钟不能为空");
+        this.ticker = ticker;
+        this.defaultTimeToLive = Math.max(0, unit.toNanos(timeToLive));
+        this.defaultTimeToIdle = Math.max(0, unit.toNanos(timeToIdle));
+        this.timingWheel = new TimingWheel<>(ticker.getAsLong());
+        this.map = new LruMap<>(capacity, eldest -> {
+            timingWheel.cancel(eldest);
+            statsCounter.recordEviction();
+        });
+    }
+
+    @Override
+    public void set(K key, V value) {
+        put(key, value, defaultTimeToLive, defaultTimeToIdle);
+    }
+
+    @Override
+    public void set(K key, V value, long timeToLive, long timeToIdle, TimeUnit unit) {
+        Objects.requireNonNull(unit, "时间单位不能为空");
+        put(key, value, Math.max(0, unit.toNanos(timeToLive)), Math.max(0, unit.toNanos(timeToIdle)));
+    }
+
+    @Override
+    public V get(K key) {
+        Objects.requireNonNull(key, "键不能为空");
+        long now = expire();
+        Entry<K, V> entry = map.get(key);
+        if (entry == null) {
+            statsCounter.recordMisses(1);
+            return null;
+        }
+        if (entry.isExpired(now)) {
+            remove(entry);
+            statsCounter.recordEviction();
+            statsCounter.recordMisses(1);
+            return null;
+        }
+        statsCounter.recordHits(1);
+        if (entry.timeToIdle > 0) {
+            // 被访问后空闲时间重新计算, 在时间轮中重新调度
+            entry.setDeadline(entry.deadline(now));
+            timingWheel.schedule(entry);
+        }
+        return entry.value;
+    }
+
+    @Override
+    public V remove(K key) {
+        Objects.requireNonNull(key, "键不能为空");
+        long now = expire();
+        Entry<K, V> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        remove(entry);
+        return entry.isExpired(now) ? null : entry.value;
+    }
+
+    /**
+     * 当前缓存的元素个数, 已经过期但还没到达时间轮下一个tick的缓存也会被计算在内
+     *
+     * @return size
+     */
+    public int size() {
+        expire();
+        return map.size();
+    }
+
+    @Override
+    public String toString() {
+        expire();
+        StringBuilder sb = new StringBuilder("{");
+        map.forEach((k, entry) -> sb.append(sb.length() > 1 ? ", " : "").append(k).append('=').append(entry.value));
+        return sb.append('}').toString();
+    }
+
+    private void put(K key, V value, long timeToLive, long timeToIdle) {
+        Objects.requireNonNull(key, "键不能为空");
+        Objects.requireNonNull(value, "值不能为空");
+        long now = expire();
+        Entry<K, V> entry = new Entry<>(key, value, timeToLive, timeToIdle, now);
+        Entry<K, V> old = map.put(key, entry);
+        if (old != null) {
+            timingWheel.cancel(old);
+        }
+        if (entry.getDeadline() != Long.MAX_VALUE) {
+            timingWheel.schedule(entry);
+        }
+    }
+
+    private void remove(Entry<K, V> entry) {
+        map.remove(entry.key);
+        timingWheel.cancel(entry);
+    }
+
+    /**
+     * 推进时间轮, 删除所有已经到期的缓存
+     *
+     * @return 当前时间
+     */
+    private long expire() {
+        long now = ticker.getAsLong();
+        timingWheel.advance(now, entry -> {
+            if (map.remove(entry.key, entry)) {
+                statsCounter.recordEviction();
+            }
+        });
+        return now;
+    }
+
+    /**
+     * 按访问顺序排列的{@link LinkedHashMap}, 超出容量时淘汰最久未访问的缓存, 并通知监听器
+     */
+    private static class LruMap<K, V> extends LinkedHashMap<K, Entry<K, V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private final transient Consumer<Entry<K, V>> evictionListener;
+
+        LruMap(int capacity, Consumer<Entry<K, V>> evictionListener) {
+            super(capacity, 0.75f, true);
+            this.capacity = capacity;
+            this.evictionListener = evictionListener;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<K, V>> eldest) {
+            if (size() > capacity) {
+                evictionListener.accept(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class Entry<K, V> extends TimingWheel.Timeout {
+        final K key;
+        final V value;
+        final long timeToIdle;
+
+        /**
+         * 由存活时间决定的过期时间, 不会随着访问而改变
+         */
+        final long liveDeadline;
+
+        Entry(K key, V value, long timeToLive, long timeToIdle, long now) {
+            this.key = key;
+            this.value = value;
+            this.timeToIdle = timeToIdle;
+            this.liveDeadline = timeToLive > 0 ? saturatedAdd(now, timeToLive) : Long.MAX_VALUE;
+            setDeadline(deadline(now));
+        }
+
+        /**
+         * 从{@code now}开始计算的过期时间: 存活时间和空闲时间中先到期的那一个
+         */
+        long deadline(long now) {
+            return timeToIdle > 0 ? Math.min(liveDeadline, saturatedAdd(now, timeToIdle)) : liveDeadline;
+        }
+
+        boolean isExpired(long now) {
+            return getDeadline() != Long.MAX_VALUE && getDeadline() - now <= 0;
+        }
+
+        private static long saturatedAdd(long now, long duration) {
+            long result = now + duration;
+            return result < now ? Long.MAX_VALUE : result;
+        }
+    }
+}
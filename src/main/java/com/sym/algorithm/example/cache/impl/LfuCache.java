@@ -1,24 +1,372 @@
 package com.sym.algorithm.example.cache.impl;
 
-import com.sym.algorithm.example.cache.ICache;
+import com.sym.algorithm.example.cache.AbstractCache;
+import com.sym.algorithm.example.cache.ISnapshotCache;
+import com.sym.algorithm.example.cache.Weigher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
+ * LFU 缓存(LFU, 即Least Frequently Used, 最不经常使用), 所有操作的时间复杂度都是 O(1).
+ * <p>
+ * 实现方式是"频率桶双向链表 + 键索引":
+ * 1.键索引: 一个哈希表, 通过key直接定位到缓存节点;
+ * 2.频率桶: 每个桶表示一个访问频率, 桶之间按照频率从小到大串成一个双向链表,
+ * 桶内部又是一个双向链表, 挂着所有访问频率等于该值的缓存节点.
+ * <p>
+ * 当一个节点被访问时, 只需要把它从当前桶摘下, 挂到下一个桶(频率+1)的尾部, 如果下一个桶
+ * 不存在就新建一个. 淘汰时直接取频率最低的桶(即桶链表的头节点)的头节点, 同一个频率桶内部
+ * 按照 LRU 的顺序淘汰, 这样就不需要线性扫描寻找最小频率.
+ * <p>
+ * 支持按条目个数限制容量, 也支持通过{@link Weigher}按权重之和限制容量.
+ *
  * @author shenyanming
  * Created on 2021/1/18 10:33
  */
-public class LfuCache<K, V> implements ICache<K, V> {
+public class LfuCache<K, V> extends AbstractCache<K, V> implements ISnapshotCache<K, V> {
+
+    /**
+     * 最大权重, 默认每个条目的权重为1, 即最大条目个数
+     */
+    private final long maxWeight;
+
+    private final Weigher<? super K, ? super V> weigher;
+
+    /**
+     * 当前所有条目的权重之和, 在写入和删除时增量维护
+     */
+    private long totalWeight;
+
+    /**
+     * 键索引
+     */
+    private final Map<K, Node<K, V>> index;
+
+    /**
+     * 频率最低的桶
+     */
+    private FrequencyBucket<K, V> head;
+
+    /**
+     * 上一次恢复条目时使用的频率桶
+     */
+    private FrequencyBucket<K, V> restoreHint;
+
+    public LfuCache(int capacity) {
+        this(capacity, capacity, Weigher.singleton());
+    }
+
+    /**
+     * 按照权重限制容量, 例如以值占用的字节数作为权重, 就可以把缓存的总大小限制在指定字节数以内
+     *
+     * @param maxWeight 最大权重
+     * @param weigher   权重计算器
+     */
+    public LfuCache(long maxWeight, Weigher<? super K, ? super V> weigher) {
+        this(16, maxWeight, weigher);
+    }
+
+    private LfuCache(int initialCapacity, long maxWeight, Weigher<? super K, ? super V> weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("容量必须大于0, 当前值为: " + maxWeight);
+        }
+        this.weigher = Objects.requireNonNull(weigher, "权重计算器不能为空");
+        this.maxWeight = maxWeight;
+        this.index = new HashMap<>(initialCapacity);
+    }
+
     @Override
     public void set(K key, V value) {
-
+        Objects.requireNonNull(key, "键不能为空");
+        Objects.requireNonNull(value, "值不能为空");
+        int weight = weigher.weigh(key, value);
+        if (weight > maxWeight) {
+            // 单个条目就已经超过了最大权重, 不缓存它, 同时删除旧值避免读到过期数据
+            remove(key);
+            return;
+        }
+        Node<K, V> node = index.get(key);
+        if (node != null) {
+            // 修改缓存值也算一次访问
+            node.value = value;
+            totalWeight += weight - node.weight;
+            node.weight = weight;
+            increment(node);
+            while (totalWeight > maxWeight) {
+                evict();
+            }
+            return;
+        }
+        // 先腾出足够的空间, 再放入新节点, 避免新节点刚放入就被淘汰
+        while (totalWeight + weight > maxWeight) {
+            evict();
+        }
+        node = new Node<>(key, value, weight);
+        totalWeight += weight;
+        index.put(key, node);
+        // 新节点的访问频率为1, 挂到频率为1的桶上
+        FrequencyBucket<K, V> bucket = head;
+        if (bucket == null || bucket.frequency != 1) {
+            bucket = addBucketAfter(null, 1);
+        }
+        bucket.append(node);
     }
 
     @Override
     public V get(K key) {
-        return null;
+        Objects.requireNonNull(key, "键不能为空");
+        Node<K, V> node = index.get(key);
+        if (node == null) {
+            statsCounter.recordMisses(1);
+            return null;
+        }
+        statsCounter.recordHits(1);
+        increment(node);
+        return node.value;
     }
 
     @Override
     public V remove(K key) {
-        return null;
+        Objects.requireNonNull(key, "键不能为空");
+        Node<K, V> node = index.remove(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        totalWeight -= node.weight;
+        return node.value;
+    }
+
+    /**
+     * 按照访问频率从低到高遍历, 同一频率下从最久没被访问的开始
+     */
+    @Override
+    public void forEachEntry(EntryConsumer<? super K, ? super V> consumer) {
+        for (FrequencyBucket<K, V> bucket = head; bucket != null; bucket = bucket.next) {
+            for (Node<K, V> node = bucket.first; node != null; node = node.next) {
+                consumer.accept(node.key, node.value, bucket.frequency);
+            }
+        }
+    }
+
+    /**
+     * 以指定的访问频率恢复一个条目. 快照是按照频率从低到高导出的, 按顺序恢复时目标频率桶
+     * 总是在桶链表的末尾, 所以这里从上一次恢复的桶开始向后查找
+     */
+    @Override
+    public void restore(K key, V value, int frequency) {
+        remove(key);
+        int weight = weigher.weigh(key, value);
+        if (weight > maxWeight) {
+            return;
+        }
+        while (totalWeight + weight > maxWeight) {
+            evict();
+        }
+        frequency = Math.max(1, frequency);
+        FrequencyBucket<K, V> prev = null;
+        FrequencyBucket<K, V> bucket = restoreHint != null && restoreHint.frequency <= frequency
+                && isLinked(restoreHint) ? restoreHint : head;
+        if (bucket != null && bucket.frequency > frequency) {
+            bucket = null;
+        }
+        while (bucket != null && bucket.frequency < frequency) {
+            prev = bucket;
+            bucket = bucket.next;
+        }
+        if (bucket == null || bucket.frequency != frequency) {
+            bucket = addBucketAfter(prev, frequency);
+        }
+        Node<K, V> node = new Node<>(key, value, weight);
+        index.put(key, node);
+        totalWeight += weight;
+        bucket.append(node);
+        restoreHint = bucket;
+    }
+
+    /**
+     * 当前缓存的元素个数
+     *
+     * @return size
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * 当前所有条目的权重之和
+     *
+     * @return weight
+     */
+    public long weight() {
+        return totalWeight;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (FrequencyBucket<K, V> bucket = head; bucket != null; bucket = bucket.next) {
+            for (Node<K, V> node = bucket.first; node != null; node = node.next) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(node.key).append('=').append(node.value)
+                        .append('(').append(bucket.frequency).append(')');
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * 将节点的访问频率加1, 即把它移动到下一个频率桶的尾部
+     *
+     * @param node 缓存节点
+     */
+    private void increment(Node<K, V> node) {
+        FrequencyBucket<K, V> bucket = node.bucket;
+        int frequency = bucket.frequency + 1;
+        FrequencyBucket<K, V> next = bucket.next;
+        if (next == null || next.frequency != frequency) {
+            next = addBucketAfter(bucket, frequency);
+        }
+        // 新桶要在删除旧桶之前创建, 因为它需要以旧桶作为插入位置
+        bucket.unlink(node);
+        next.append(node);
+        if (bucket.isEmpty()) {
+            removeBucket(bucket);
+        }
+    }
+
+    /**
+     * 淘汰频率最低的桶里最久没有被访问的节点
+     */
+    private void evict() {
+        Node<K, V> eldest = head.first;
+        index.remove(eldest.key);
+        unlink(eldest);
+        totalWeight -= eldest.weight;
+        statsCounter.recordEviction();
+    }
+
+    /**
+     * 将节点从所在的频率桶中摘下, 如果桶变为空则一并删除
+     *
+     * @param node 缓存节点
+     */
+    private void unlink(Node<K, V> node) {
+        FrequencyBucket<K, V> bucket = node.bucket;
+        bucket.unlink(node);
+        if (bucket.isEmpty()) {
+            removeBucket(bucket);
+        }
+    }
+
+    /**
+     * 在{@code prev}后面新增一个频率桶, {@code prev}为null表示插入到头部
+     *
+     * @param prev      前一个频率桶
+     * @param frequency 新桶的频率
+     * @return 新的频率桶
+     */
+    private FrequencyBucket<K, V> addBucketAfter(FrequencyBucket<K, V> prev, int frequency) {
+        FrequencyBucket<K, V> bucket = new FrequencyBucket<>(frequency);
+        FrequencyBucket<K, V> next = prev == null ? head : prev.next;
+        bucket.prev = prev;
+        bucket.next = next;
+        if (prev == null) {
+            head = bucket;
+        } else {
+            prev.next = bucket;
+        }
+        if (next != null) {
+            next.prev = bucket;
+        }
+        return bucket;
+    }
+
+    /**
+     * 判断频率桶是否还在桶链表中
+     */
+    private boolean isLinked(FrequencyBucket<K, V> bucket) {
+        return bucket == head || bucket.prev != null;
+    }
+
+    private void removeBucket(FrequencyBucket<K, V> bucket) {
+        FrequencyBucket<K, V> prev = bucket.prev;
+        FrequencyBucket<K, V> next = bucket.next;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        bucket.prev = bucket.next = null;
+    }
+
+    /**
+     * 频率桶, 桶内的节点按照访问的先后顺序排列, 头节点是最久没被访问的
+     */
+    private static class FrequencyBucket<K, V> {
+        final int frequency;
+        FrequencyBucket<K, V> prev;
+        FrequencyBucket<K, V> next;
+        Node<K, V> first;
+        Node<K, V> last;
+
+        FrequencyBucket(int frequency) {
+            this.frequency = frequency;
+        }
+
+        boolean isEmpty() {
+            return first == null;
+        }
+
+        void append(Node<K, V> node) {
+            node.bucket = this;
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void unlink(Node<K, V> node) {
+            Node<K, V> prev = node.prev;
+            Node<K, V> next = node.next;
+            if (prev == null) {
+                first = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                last = prev;
+            } else {
+                next.prev = prev;
+            }
+            node.prev = node.next = null;
+            node.bucket = null;
+        }
+    }
+
+    private static class Node<K, V> {
+        final K key;
+        V value;
+        int weight;
+        FrequencyBucket<K, V> bucket;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
     }
 }
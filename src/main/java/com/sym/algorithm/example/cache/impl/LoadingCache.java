@@ -0,0 +1,245 @@
+package com.sym.algorithm.example.cache.impl;
+
+import com.sym.algorithm.example.cache.CacheLoader;
+import com.sym.algorithm.example.cache.AbstractCache;
+import com.sym.algorithm.example.cache.ICache;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 自动加载的缓存, 未命中时通过{@link CacheLoader}加载值并放入缓存.
+ * <p>
+ * 1.合并加载(single-flight): 多个线程同时未命中同一个key时, 只有第一个线程真正去加载,
+ * 它把一个{@link CompletableFuture}登记到"加载中"的表里, 其它线程发现已有加载在进行,
+ * 就直接等待这个future的结果, 避免冷启动时大量请求同时打到数据源上(缓存击穿);
+ * <p>
+ * 2.提前刷新(refresh-ahead): 可选地指定一个刷新时间, 缓存命中时如果发现值已经加载了超过这个时间,
+ * 就在后台线程中异步重新加载, 当前线程仍然直接返回旧值. 刷新时间小于底层缓存的过期时间时,
+ * 热点数据在过期之前就会被刷新, 永远不会出现未命中. 刷新任务单独登记, 不和未命中的加载共用"加载中"的表:
+ * 刷新期间key被删除或淘汰时, 随后的未命中用自己的加载器独立加载, 不会等待一个不写入缓存、可能失败的刷新结果.
+ * <p>
+ * 真正存储数据的是构造时传入的{@link ICache}, 值会和它的加载时间一起放在{@link Loaded}里.
+ * 由于会有多个线程同时读写, 底层缓存必须是线程安全的, 例如{@link ConcurrentLruCache}.
+ * 异步刷新的结果通过{@link ICache#replace(Object, Object, Object)}写回, 底层缓存的这个方法也必须是原子的.
+ *
+ * @author shenyanming
+ * Created on 2021/1/29 10:12
+ */
+public class LoadingCache<K, V> extends AbstractCache<K, V> {
+
+    /**
+     * 底层缓存
+     */
+    private final ICache<K, Loaded<V>> store;
+
+    /**
+     * 默认的加载器
+     */
+    private final CacheLoader<? super K, ? extends V> loader;
+
+    /**
+     * 未命中后正在加载中的key
+     */
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loadings = new ConcurrentHashMap<>();
+
+    /**
+     * 正在异步刷新的key
+     */
+    private final Set<K> refreshings = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 刷新时间, 单位纳秒, 0表示不刷新
+     */
+    private final long refreshAfterNanos;
+
+    /**
+     * 执行异步刷新的线程池
+     */
+    private final Executor executor;
+
+    public LoadingCache(ICache<K, Loaded<V>> store, CacheLoader<? super K, ? extends V> loader) {
+        this(store, loader, 0, TimeUnit.NANOSECONDS, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 构造带有提前刷新功能的加载缓存
+     *
+     * @param store        底层缓存, 必须是线程安全的
+     * @param loader       默认的加载器
+     * @param refreshAfter 值加载了多久以后, 再次命中时触发异步刷新, 小于等于0表示不刷新
+     * @param unit         时间单位
+     * @param executor     执行异步刷新的线程池
+     */
+    public LoadingCache(ICache<K, Loaded<V>> store, CacheLoader<? super K, ? extends V> loader,
+                        long refreshAfter, TimeUnit unit, Executor executor) {
+        this.store = Objects.requireNonNull(store, "底层缓存不能为空");
+        this.loader = Objects.requireNonNull(loader, "加载器不能为空");
+        this.executor = Objects.requireNonNull(executor, "线程池不能为空");
+        this.refreshAfterNanos = Math.max(0, unit.toNanos(refreshAfter));
+    }
+
+    @Override
+    public void set(K key, V value) {
+        Objects.requireNonNull(value, "值不能为空");
+        store.set(key, new Loaded<>(value, System.nanoTime()));
+    }
+
+    /**
+     * 获取缓存值, 未命中时通过默认的加载器加载
+     */
+    @Override
+    public V get(K key) {
+        return getOrLoad(key, loader);
+    }
+
+    /**
+     * 获取缓存值, 未命中时通过指定的加载器加载, 并发未命中同一个key时只会加载一次
+     */
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Objects.requireNonNull(loader, "加载器不能为空");
+        return getOrLoad(key, loader::apply);
+    }
+
+    @Override
+    public V remove(K key) {
+        Loaded<V> old = store.remove(key);
+        return old == null ? null : old.value;
+    }
+
+    @Override
+    public String toString() {
+        return store.toString();
+    }
+
+    private V getOrLoad(K key, CacheLoader<? super K, ? extends V> loader) {
+        Objects.requireNonNull(key, "键不能为空");
+        Loaded<V> loaded = store.get(key);
+        if (loaded != null) {
+            statsCounter.recordHits(1);
+            refreshIfNeeded(key, loaded, loader);
+            return loaded.value;
+        }
+        statsCounter.recordMisses(1);
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loadings.putIfAbsent(key, future);
+        if (inFlight != null) {
+            // 已经有其它线程在加载了, 等待它的结果即可
+            return join(key, inFlight);
+        }
+        try {
+            // 再检查一次, 因为可能在我们登记之前, 别的线程刚好加载完成并且已经把自己从加载表中移除
+            loaded = store.get(key);
+            future.complete(loaded != null ? loaded.value : load(key, loader, null));
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            loadings.remove(key, future);
+        }
+        return join(key, future);
+    }
+
+    /**
+     * 值加载的时间超过了刷新时间, 就在后台异步重新加载. 同一个key同时只会有一个刷新任务,
+     * 刷新失败时保留旧值, 刷新期间缓存被修改或删除时丢弃刷新的结果
+     */
+    private void refreshIfNeeded(K key, Loaded<V> loaded, CacheLoader<? super K, ? extends V> loader) {
+        if (refreshAfterNanos == 0 || System.nanoTime() - loaded.loadTime < refreshAfterNanos) {
+            return;
+        }
+        if (!refreshings.add(key)) {
+            return;
+        }
+        Runnable refresh = () -> {
+            try {
+                load(key, loader, loaded);
+            } catch (Throwable e) {
+                // 失败已经记录在统计信息里, 旧值仍然可用, 下一次命中会再次刷新
+            } finally {
+                refreshings.remove(key);
+            }
+        };
+        try {
+            executor.execute(refresh);
+        } catch (RejectedExecutionException e) {
+            // 线程池繁忙时放弃这一次刷新, 等下一次命中再尝试
+            refreshings.remove(key);
+        }
+    }
+
+    /**
+     * 调用加载器加载值, 并放入底层缓存
+     *
+     * @param expected 刷新时开始刷新的那个旧值, 只有底层缓存中仍然是它时才写入新值;
+     *                 为null时表示未命中后的加载, 直接写入
+     */
+    private V load(K key, CacheLoader<? super K, ? extends V> loader, Loaded<V> expected) throws Exception {
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = loader.load(key);
+        } catch (Throwable e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - start);
+            throw e;
+        }
+        long now = System.nanoTime();
+        if (value == null) {
+            statsCounter.recordLoadFailure(now - start);
+        } else {
+            statsCounter.recordLoadSuccess(now - start);
+            if (expected == null) {
+                store.set(key, new Loaded<>(value, now));
+            } else {
+                // 刷新期间缓存可能被set()覆盖或者被remove()删除, 这时刷新的结果已经过时, 直接丢弃
+                store.replace(key, expected, new Loaded<>(value, now));
+            }
+        }
+        return value;
+    }
+
+    private V join(K key, CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("加载缓存失败, key=" + key, cause);
+        }
+    }
+
+    /**
+     * 底层缓存中存放的值, 记录了它的加载时间
+     */
+    public static final class Loaded<V> {
+        private final V value;
+        private final long loadTime;
+
+        Loaded(V value, long loadTime) {
+            this.value = value;
+            this.loadTime = loadTime;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+}
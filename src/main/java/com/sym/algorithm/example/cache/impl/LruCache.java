@@ -1,44 +1,151 @@
 package com.sym.algorithm.example.cache.impl;
 
-import com.sym.algorithm.example.cache.ICache;
+import com.sym.algorithm.example.cache.AbstractCache;
+import com.sym.algorithm.example.cache.ISnapshotCache;
+import com.sym.algorithm.example.cache.Weigher;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.Objects;
 
 
 /**
  * 基于{@link java.util.LinkedHashMap>的 LRU 缓存
  * (LRU, 即Least Recently Used, 最近最少使用)
+ * <p>
+ * 支持按条目个数限制容量, 也支持通过{@link Weigher}按权重之和限制容量.
  *
  * @author shenyanming
  * Created on 2020/5/20 17:37
  */
-public class LruCache<K,V> implements ICache<K,V> {
+public class LruCache<K,V> extends AbstractCache<K,V> implements ISnapshotCache<K,V> {
 
-    private LinkedHashMap<K,V> map;
+    /**
+     * 值和它写入时计算的权重放在一起, 删除和淘汰时直接减去这个权重, 不需要重新计算
+     */
+    private LinkedHashMap<K, Weighted<V>> map;
+
+    /**
+     * 最大权重, 默认每个条目的权重为1, 即最大条目个数
+     */
+    private final long maxWeight;
+
+    private final Weigher<? super K, ? super V> weigher;
+
+    /**
+     * 当前所有条目的权重之和, 在写入和删除时增量维护
+     */
+    private long totalWeight;
 
     public LruCache(int capacity){
-        map = new LryLinkedHashMap<>(capacity);
+        this(capacity, capacity, Weigher.singleton());
+    }
+
+    /**
+     * 按照权重限制容量, 例如以值占用的字节数作为权重, 就可以把缓存的总大小限制在指定字节数以内
+     *
+     * @param maxWeight 最大权重
+     * @param weigher   权重计算器
+     */
+    public LruCache(long maxWeight, Weigher<? super K, ? super V> weigher){
+        this(16, maxWeight, weigher);
+    }
+
+    private LruCache(int initialCapacity, long maxWeight, Weigher<? super K, ? super V> weigher){
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("容量必须大于0, 当前值为: " + maxWeight);
+        }
+        this.weigher = Objects.requireNonNull(weigher, "权重计算器不能为空");
+        this.maxWeight = maxWeight;
+        // 第三个参数为true, 表示按照访问顺序排列节点, 每次get()后节点都会被移动到链表的末尾
+        map = new LinkedHashMap<>(initialCapacity, 0.75f, true);
     }
 
     @Override
     public void set(K key, V value) {
         Objects.requireNonNull(key, "键不能为空");
         Objects.requireNonNull(value, "值不能为空");
-        map.put(key, value);
+        int weight = weigher.weigh(key, value);
+        if (weight > maxWeight) {
+            // 单个条目就已经超过了最大权重, 不缓存它, 同时删除旧值避免读到过期数据
+            remove(key);
+            return;
+        }
+        Weighted<V> old = map.put(key, new Weighted<>(value, weight));
+        if (old != null) {
+            totalWeight -= old.weight;
+        }
+        totalWeight += weight;
+        evict();
     }
 
     @Override
     public V get(K key) {
         Objects.requireNonNull(key, "键不能为空");
-        return map.get(key);
+        Weighted<V> weighted = map.get(key);
+        if (weighted == null) {
+            statsCounter.recordMisses(1);
+            return null;
+        }
+        statsCounter.recordHits(1);
+        return weighted.value;
     }
 
     @Override
     public V remove(K key) {
         Objects.requireNonNull(key, "键不能为空");
-        return map.remove(key);
+        Weighted<V> old = map.remove(key);
+        if (old == null) {
+            return null;
+        }
+        totalWeight -= old.weight;
+        return old.value;
+    }
+
+    /**
+     * 直接比较底层的值, 不会计入命中或未命中的统计
+     */
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(key, "键不能为空");
+        Weighted<V> current = map.get(key);
+        if (current == null || !Objects.equals(current.value, oldValue)) {
+            return false;
+        }
+        set(key, newValue);
+        return true;
+    }
+
+    /**
+     * 从最近最少使用的条目开始遍历, LRU 不关心访问频率, 所以频率都为1
+     */
+    @Override
+    public void forEachEntry(EntryConsumer<? super K, ? super V> consumer) {
+        // LinkedHashMap的forEach()不会改变访问顺序
+        map.forEach((k, weighted) -> consumer.accept(k, weighted.value, 1));
+    }
+
+    @Override
+    public void restore(K key, V value, int frequency) {
+        set(key, value);
+    }
+
+    /**
+     * 当前缓存的元素个数
+     *
+     * @return size
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * 当前所有条目的权重之和
+     *
+     * @return weight
+     */
+    public long weight() {
+        return totalWeight;
     }
 
     @Override
@@ -46,26 +153,35 @@ public class LruCache<K,V> implements ICache<K,V> {
         return map.toString();
     }
 
-    static class LryLinkedHashMap<K,V> extends LinkedHashMap<K,V>{
-        /**
-         * 最大容量
-         */
-        private int capacity;
+    /**
+     * 由于每次get()后节点都会被移动到链表的末尾, 所以链表的头节点就是最近最少使用的,
+     * 当总权重超过最大值时, 从头节点开始依次删除. 刚写入的节点位于链表末尾,
+     * 且它的权重不超过最大值, 所以它不会被删除
+     */
+    private void evict() {
+        Iterator<Weighted<V>> iterator = map.values().iterator();
+        while (totalWeight > maxWeight && iterator.hasNext()) {
+            totalWeight -= iterator.next().weight;
+            iterator.remove();
+            statsCounter.recordEviction();
+        }
+    }
+
+    /**
+     * 缓存的值以及写入时计算的权重
+     */
+    private static final class Weighted<V> {
+        final V value;
+        final int weight;
 
-        public LryLinkedHashMap(int capacity){
-            super(capacity, 0.75f, true);
-            this.capacity = capacity;
+        Weighted(V value, int weight) {
+            this.value = value;
+            this.weight = weight;
         }
 
-        /**
-         * 当容量达到 capacity 时, 移除头节点, 所以必须每次get()后将该节点移动到链表的末尾,
-         * 这样链表的头节点才是最近最少使用的, 当容量不足时就可以删除它
-         * @param eldest 最近最少使用的节点
-         * @return boolean
-         */
         @Override
-        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-            return size() > capacity;
+        public String toString() {
+            return String.valueOf(value);
         }
     }
 }
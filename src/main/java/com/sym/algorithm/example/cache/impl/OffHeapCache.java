@@ -0,0 +1,345 @@
+package com.sym.algorithm.example.cache.impl;
+
+import com.sym.algorithm.example.cache.AbstractCache;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * 堆外内存的字节数组缓存.
+ * <p>
+ * 缓存条目很多时, 堆内的{@link LruCache}会产生大量的小对象(节点、键、值), 每次GC都要扫描它们.
+ * 这里把键和值都放在 direct ByteBuffer 分配的堆外内存中, 堆上只保留固定数量的对象
+ * (几个ByteBuffer和若干int字段), 无论缓存了多少条目, GC的压力都不会变化:
+ * <p>
+ * 1.slab分配: 预先申请若干大块的堆外内存(slab), 切分成固定大小的槽(slot), 一个条目占用一个槽,
+ * 槽的布局为: [键长度(4字节)][值长度(4字节)][哈希值(4字节)][访问标记(1字节)][填充(3字节)][键][值].
+ * 空闲的槽通过"值长度"字段串成一个空闲链表;
+ * <p>
+ * 2.堆外索引: 一张开放寻址(线性探测)的哈希表, 同样放在堆外内存中, 每个位置是一个int, 存放槽号+1,
+ * 0表示空位. 删除时使用"后移删除"把后面的元素往前挪, 不需要墓碑标记;
+ * <p>
+ * 3.CLOCK淘汰: 近似 LRU 的时钟算法, 每次命中时把槽的访问标记置为1. 需要淘汰时, 时钟指针扫描所有的槽,
+ * 访问标记为1的槽给予"第二次机会"(清零后跳过), 遇到访问标记为0的槽就淘汰它.
+ * <p>
+ * 这个类不是线程安全的, 多线程使用时需要外部加锁.
+ *
+ * @author shenyanming
+ * Created on 2021/2/1 14:30
+ */
+public class OffHeapCache extends AbstractCache<byte[], byte[]> {
+
+    private static final int KEY_LENGTH_OFFSET = 0;
+    private static final int VALUE_LENGTH_OFFSET = 4;
+    private static final int HASH_OFFSET = 8;
+    private static final int REFERENCED_OFFSET = 12;
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * 每个slab的最大字节数
+     */
+    private static final int MAX_SLAB_SIZE = 1 << 30;
+
+    /**
+     * 槽数量的上限: 索引表的大小是槽数量向上取整到2的幂次方后的2~4倍, 每个位置4字节,
+     * 槽数量超过 2^27 时索引表的字节数会超出int的范围
+     */
+    private static final int MAX_SLOT_COUNT = 1 << 27;
+
+    /**
+     * 空闲链表的结束标记
+     */
+    private static final int NIL = -1;
+
+    private final ByteBuffer[] slabs;
+    private final int slotSize;
+    private final int slotsPerSlab;
+    private final int slotCount;
+
+    /**
+     * 开放寻址的索引表
+     */
+    private final ByteBuffer index;
+    private final int indexMask;
+
+    /**
+     * 从未使用过的槽从这里开始分配
+     */
+    private int nextUnusedSlot;
+
+    /**
+     * 空闲链表的头
+     */
+    private int freeHead = NIL;
+
+    /**
+     * CLOCK算法的指针
+     */
+    private int clockHand;
+
+    private int size;
+
+    /**
+     * 构造堆外缓存
+     *
+     * @param slotCount 槽的数量, 即最多缓存的条目个数, 不能超过 2^27
+     * @param slotSize  每个槽的字节数, 键和值的长度之和不能超过 slotSize - 16
+     */
+    public OffHeapCache(int slotCount, int slotSize) {
+        if (slotCount <= 0 || slotSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("槽的数量必须大于0, 槽的大小必须大于" + HEADER_SIZE);
+        }
+        if (slotCount > MAX_SLOT_COUNT) {
+            throw new IllegalArgumentException("槽的数量不能超过" + MAX_SLOT_COUNT + ", 当前值为: " + slotCount);
+        }
+        this.slotCount = slotCount;
+        this.slotSize = slotSize;
+        this.slotsPerSlab = Math.max(1, MAX_SLAB_SIZE / slotSize);
+        int slabCount = (slotCount + slotsPerSlab - 1) / slotsPerSlab;
+        this.slabs = new ByteBuffer[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            int slots = Math.min(slotsPerSlab, slotCount - i * slotsPerSlab);
+            slabs[i] = ByteBuffer.allocateDirect(slots * slotSize);
+        }
+        // 索引表的大小至少是槽数量的2倍, 保证负载因子不超过0.5
+        int indexSize = Integer.highestOneBit(Math.max(2, slotCount) - 1) << 2;
+        this.index = ByteBuffer.allocateDirect(indexSize * 4);
+        this.indexMask = indexSize - 1;
+    }
+
+    @Override
+    public void set(byte[] key, byte[] value) {
+        Objects.requireNonNull(key, "键不能为空");
+        Objects.requireNonNull(value, "值不能为空");
+        if (key.length + value.length > slotSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("键和值的长度之和不能超过" + (slotSize - HEADER_SIZE)
+                    + ", 当前值为: " + (key.length + value.length));
+        }
+        int hash = hash(key);
+        int position = find(key, hash);
+        int slot;
+        if (position >= 0) {
+            // 键已存在, 直接覆盖槽里的值
+            slot = index.getInt(position << 2) - 1;
+        } else {
+            slot = allocate();
+            ByteBuffer slab = slabOf(slot);
+            int offset = offsetOf(slot);
+            slab.putInt(offset + KEY_LENGTH_OFFSET, key.length);
+            slab.putInt(offset + HASH_OFFSET, hash);
+            write(slab, offset + HEADER_SIZE, key);
+            insert(hash, slot);
+            size++;
+        }
+        ByteBuffer slab = slabOf(slot);
+        int offset = offsetOf(slot);
+        slab.putInt(offset + VALUE_LENGTH_OFFSET, value.length);
+        slab.put(offset + REFERENCED_OFFSET, (byte) 1);
+        write(slab, offset + HEADER_SIZE + key.length, value);
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        Objects.requireNonNull(key, "键不能为空");
+        int position = find(key, hash(key));
+        if (position < 0) {
+            statsCounter.recordMisses(1);
+            return null;
+        }
+        statsCounter.recordHits(1);
+        int slot = index.getInt(position << 2) - 1;
+        ByteBuffer slab = slabOf(slot);
+        int offset = offsetOf(slot);
+        slab.put(offset + REFERENCED_OFFSET, (byte) 1);
+        return readValue(slab, offset);
+    }
+
+    @Override
+    public byte[] remove(byte[] key) {
+        Objects.requireNonNull(key, "键不能为空");
+        int position = find(key, hash(key));
+        if (position < 0) {
+            return null;
+        }
+        int slot = index.getInt(position << 2) - 1;
+        byte[] value = readValue(slabOf(slot), offsetOf(slot));
+        delete(position);
+        free(slot);
+        return value;
+    }
+
+    /**
+     * 当前缓存的元素个数
+     *
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 分配一个槽: 优先使用空闲链表, 其次是从未使用过的槽, 都没有时通过CLOCK算法淘汰一个
+     */
+    private int allocate() {
+        if (freeHead != NIL) {
+            int slot = freeHead;
+            freeHead = slabOf(slot).getInt(offsetOf(slot) + VALUE_LENGTH_OFFSET);
+            return slot;
+        }
+        if (nextUnusedSlot < slotCount) {
+            return nextUnusedSlot++;
+        }
+        return evict();
+    }
+
+    /**
+     * CLOCK算法: 访问标记为1的槽清零后跳过, 淘汰第一个访问标记为0的槽.
+     * 最坏情况下扫描一圈后所有标记都被清零, 所以最多扫描两圈
+     */
+    private int evict() {
+        while (true) {
+            int slot = clockHand;
+            clockHand = clockHand + 1 == slotCount ? 0 : clockHand + 1;
+            ByteBuffer slab = slabOf(slot);
+            int offset = offsetOf(slot);
+            if (slab.getInt(offset + KEY_LENGTH_OFFSET) < 0) {
+                continue;
+            }
+            if (slab.get(offset + REFERENCED_OFFSET) != 0) {
+                slab.put(offset + REFERENCED_OFFSET, (byte) 0);
+                continue;
+            }
+            delete(positionOf(slot, slab.getInt(offset + HASH_OFFSET)));
+            size--;
+            statsCounter.recordEviction();
+            return slot;
+        }
+    }
+
+    private void free(int slot) {
+        ByteBuffer slab = slabOf(slot);
+        int offset = offsetOf(slot);
+        slab.putInt(offset + KEY_LENGTH_OFFSET, -1);
+        slab.putInt(offset + VALUE_LENGTH_OFFSET, freeHead);
+        freeHead = slot;
+        size--;
+    }
+
+    /**
+     * 在索引表中查找键的位置
+     *
+     * @return 索引表的下标, 不存在时返回-1
+     */
+    private int find(byte[] key, int hash) {
+        for (int i = hash & indexMask; ; i = (i + 1) & indexMask) {
+            int entry = index.getInt(i << 2);
+            if (entry == 0) {
+                return -1;
+            }
+            int slot = entry - 1;
+            ByteBuffer slab = slabOf(slot);
+            int offset = offsetOf(slot);
+            if (slab.getInt(offset + HASH_OFFSET) == hash && keyEquals(slab, offset, key)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * 查找指定槽在索引表中的位置
+     */
+    private int positionOf(int slot, int hash) {
+        for (int i = hash & indexMask; ; i = (i + 1) & indexMask) {
+            if (index.getInt(i << 2) == slot + 1) {
+                return i;
+            }
+        }
+    }
+
+    private void insert(int hash, int slot) {
+        int i = hash & indexMask;
+        while (index.getInt(i << 2) != 0) {
+            i = (i + 1) & indexMask;
+        }
+        index.putInt(i << 2, slot + 1);
+    }
+
+    /**
+     * 后移删除: 删除位置i之后, 把后面连续的元素中"本应放在i或者i之前"的元素挪到i, 然后继续处理被挪走的位置,
+     * 这样线性探测的查找路径就不会被空位截断
+     */
+    private void delete(int i) {
+        int j = i;
+        while (true) {
+            j = (j + 1) & indexMask;
+            int entry = index.getInt(j << 2);
+            if (entry == 0) {
+                break;
+            }
+            int slot = entry - 1;
+            int home = slabOf(slot).getInt(offsetOf(slot) + HASH_OFFSET) & indexMask;
+            // home处于(i, j]之间, 说明这个元素不需要挪动
+            boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!between) {
+                index.putInt(i << 2, entry);
+                i = j;
+            }
+        }
+        index.putInt(i << 2, 0);
+    }
+
+    private boolean keyEquals(ByteBuffer slab, int offset, byte[] key) {
+        if (slab.getInt(offset + KEY_LENGTH_OFFSET) != key.length) {
+            return false;
+        }
+        int start = offset + HEADER_SIZE;
+        for (int i = 0; i < key.length; i++) {
+            if (slab.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] readValue(ByteBuffer slab, int offset) {
+        int keyLength = slab.getInt(offset + KEY_LENGTH_OFFSET);
+        byte[] value = new byte[slab.getInt(offset + VALUE_LENGTH_OFFSET)];
+        // 使用duplicate()是为了不修改共享的slab的position
+        ByteBuffer buffer = slab.duplicate();
+        buffer.position(offset + HEADER_SIZE + keyLength);
+        buffer.get(value);
+        return value;
+    }
+
+    private static void write(ByteBuffer slab, int position, byte[] bytes) {
+        ByteBuffer buffer = slab.duplicate();
+        buffer.position(position);
+        buffer.put(bytes);
+    }
+
+    private ByteBuffer slabOf(int slot) {
+        return slabs[slot / slotsPerSlab];
+    }
+
+    private int offsetOf(int slot) {
+        return (slot % slotsPerSlab) * slotSize;
+    }
+
+    /**
+     * FNV-1a哈希, 再用MurmurHash3的fmix32扰动一下. 不能用{@link java.util.Arrays#hashCode(byte[])},
+     * 它的乘数31比一个字节的取值范围还小, 相邻字节的组合很容易算出相同的哈希值, 线性探测时会形成很长的冲突链
+     */
+    private static int hash(byte[] key) {
+        int h = 0x811c9dc5;
+        for (byte b : key) {
+            h ^= b & 0xFF;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,245 @@
+package com.sym.algorithm.example.cache.impl;
+
+import com.sym.algorithm.example.cache.AbstractCache;
+import com.sym.algorithm.example.cache.support.FrequencySketch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 基于 W-TinyLFU 准入策略的缓存.
+ * <p>
+ * 纯 LRU 最大的问题是: 一次性访问的数据(例如一次全表扫描)会把真正的热点数据全部挤出去.
+ * W-TinyLFU 把缓存分成三个区域:
+ * 1.窗口区(window), 占总容量的1%, 是一个普通的 LRU, 新数据总是先进入这里, 用来应对突发的访问;
+ * 2.试用区(probation), 主区域中占20%, 从窗口区淘汰出来的数据进入这里;
+ * 3.保护区(protected), 主区域中占80%, 试用区的数据再次被访问后晋升到这里.
+ * <p>
+ * 窗口区淘汰出来的候选者要想留在主区域, 就必须和试用区里最久未访问的数据(受害者)比较访问频率,
+ * 频率更高者留下. 访问频率由{@link FrequencySketch}估算, 它用4位计数器记录所有访问过的key
+ * (包括已经不在缓存中的), 这样只被访问一次的数据就很难挤掉热点数据.
+ *
+ * @author shenyanming
+ * Created on 2021/1/22 10:05
+ */
+public class TinyLfuCache<K, V> extends AbstractCache<K, V> {
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final int capacity;
+    private final int maxWindow;
+    private final int maxProtected;
+
+    private final Map<K, Node<K, V>> index;
+    private final FrequencySketch sketch;
+
+    private final Deque<K, V> windowDeque = new Deque<>();
+    private final Deque<K, V> probationDeque = new Deque<>();
+    private final Deque<K, V> protectedDeque = new Deque<>();
+
+    public TinyLfuCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("容量必须大于0, 当前值为: " + capacity);
+        }
+        this.capacity = capacity;
+        this.maxWindow = Math.max(1, capacity / 100);
+        this.maxProtected = (capacity - maxWindow) * 80 / 100;
+        this.index = new HashMap<>(capacity);
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    @Override
+    public void set(K key, V value) {
+        Objects.requireNonNull(key, "键不能为空");
+        Objects.requireNonNull(value, "值不能为空");
+        sketch.increment(key);
+        Node<K, V> node = index.get(key);
+        if (node != null) {
+            node.value = value;
+            onHit(node);
+            return;
+        }
+        node = new Node<>(key, value);
+        index.put(key, node);
+        node.queue = WINDOW;
+        windowDeque.addLast(node);
+        evict();
+    }
+
+    @Override
+    public V get(K key) {
+        Objects.requireNonNull(key, "键不能为空");
+        sketch.increment(key);
+        Node<K, V> node = index.get(key);
+        if (node == null) {
+            statsCounter.recordMisses(1);
+            return null;
+        }
+        statsCounter.recordHits(1);
+        onHit(node);
+        return node.value;
+    }
+
+    @Override
+    public V remove(K key) {
+        Objects.requireNonNull(key, "键不能为空");
+        Node<K, V> node = index.remove(key);
+        if (node == null) {
+            return null;
+        }
+        dequeOf(node).unlink(node);
+        return node.value;
+    }
+
+    /**
+     * 当前缓存的元素个数
+     *
+     * @return size
+     */
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public String toString() {
+        return "window=" + windowDeque + ", probation=" + probationDeque + ", protected=" + protectedDeque;
+    }
+
+    /**
+     * 缓存命中后调整节点所在的区域
+     */
+    private void onHit(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                windowDeque.moveToLast(node);
+                break;
+            case PROBATION:
+                // 试用区的数据再次被访问, 晋升到保护区
+                probationDeque.unlink(node);
+                node.queue = PROTECTED;
+                protectedDeque.addLast(node);
+                // 保护区溢出时, 把其中最久未访问的数据降级到试用区
+                if (protectedDeque.size > maxProtected) {
+                    Node<K, V> demoted = protectedDeque.first;
+                    protectedDeque.unlink(demoted);
+                    demoted.queue = PROBATION;
+                    probationDeque.addLast(demoted);
+                }
+                break;
+            default:
+                protectedDeque.moveToLast(node);
+                break;
+        }
+    }
+
+    /**
+     * 窗口区溢出时, 把窗口区最久未访问的数据作为候选者移入试用区; 总容量溢出时,
+     * 让候选者和试用区的受害者比较访问频率, 淘汰频率较低的一方
+     */
+    private void evict() {
+        if (windowDeque.size <= maxWindow) {
+            return;
+        }
+        Node<K, V> candidate = windowDeque.first;
+        windowDeque.unlink(candidate);
+        candidate.queue = PROBATION;
+        probationDeque.addLast(candidate);
+        if (index.size() <= capacity) {
+            return;
+        }
+        Node<K, V> victim = probationDeque.first;
+        if (victim == candidate) {
+            victim = protectedDeque.first;
+        }
+        if (victim == null || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+            victim = candidate;
+        }
+        index.remove(victim.key);
+        dequeOf(victim).unlink(victim);
+        statsCounter.recordEviction();
+    }
+
+    private Deque<K, V> dequeOf(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                return windowDeque;
+            case PROBATION:
+                return probationDeque;
+            default:
+                return protectedDeque;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的双向链表, 头节点是最久未访问的
+     */
+    private static class Deque<K, V> {
+        Node<K, V> first;
+        Node<K, V> last;
+        int size;
+
+        void addLast(Node<K, V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            size++;
+        }
+
+        void unlink(Node<K, V> node) {
+            Node<K, V> prev = node.prev;
+            Node<K, V> next = node.next;
+            if (prev == null) {
+                first = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                last = prev;
+            } else {
+                next.prev = prev;
+            }
+            node.prev = node.next = null;
+            size--;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != last) {
+                unlink(node);
+                addLast(node);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("{");
+            for (Node<K, V> node = first; node != null; node = node.next) {
+                sb.append(node == first ? "" : ", ").append(node.key).append('=').append(node.value);
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    private static class Node<K, V> {
+        final K key;
+        V value;
+        /**
+         * 节点所在的区域
+         */
+        byte queue;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
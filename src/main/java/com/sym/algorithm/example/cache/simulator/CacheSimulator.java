@@ -0,0 +1,265 @@
+package com.sym.algorithm.example.cache.simulator;
+
+import com.sym.algorithm.example.cache.ICache;
+import com.sym.algorithm.example.cache.impl.ConcurrentLruCache;
+import com.sym.algorithm.example.cache.impl.ExpiringCache;
+import com.sym.algorithm.example.cache.impl.LfuCache;
+import com.sym.algorithm.example.cache.impl.LruCache;
+import com.sym.algorithm.example.cache.impl.OffHeapCache;
+import com.sym.algorithm.example.cache.impl.TinyLfuCache;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * 缓存模拟器, 用同一条访问轨迹回放所有的缓存策略, 对比它们的命中率、吞吐量和每个条目占用的内存,
+ * 让选择缓存策略有数据可依.
+ * <p>
+ * 回放的方式和真实的旁路缓存一致: 先get(), 未命中时再set(). 每个条目的内存是填满一个新缓存时
+ * 分配的堆内存和堆外内存之和除以容量, 只是一个粗略的估算.
+ * <p>
+ * 统计线程分配的字节数依赖于HotSpot的{@link com.sun.management.ThreadMXBean}, 其它JVM上没有这个接口时,
+ * 只是不统计每个条目的内存(显示为n/a), 命中率和吞吐量不受影响.
+ *
+ * @author shenyanming
+ * Created on 2021/2/8 10:30
+ */
+public class CacheSimulator {
+
+    /**
+     * 不支持统计线程分配的字节数时为null
+     */
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = allocationMXBean();
+
+    private final int capacity;
+    private final Map<String, IntFunction<ICache<Long, Long>>> policies = new LinkedHashMap<>();
+
+    public CacheSimulator(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("容量必须大于0, 当前值为: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 包含了所有缓存实现的模拟器
+     *
+     * @param capacity 缓存容量
+     * @return 模拟器
+     */
+    public static CacheSimulator withDefaultPolicies(int capacity) {
+        return new CacheSimulator(capacity)
+                .policy("LRU", LruCache::new)
+                .policy("LFU", LfuCache::new)
+                .policy("W-TinyLFU", TinyLfuCache::new)
+                .policy("ConcurrentLRU", ConcurrentLruCache::new)
+                .policy("ExpiringLRU", c -> new ExpiringCache<>(c, 0, 0, TimeUnit.SECONDS))
+                .policy("OffHeapCLOCK", OffHeapLongCache::new);
+    }
+
+    /**
+     * 添加一个缓存策略
+     *
+     * @param name    策略名称
+     * @param factory 根据容量创建缓存
+     * @return this
+     */
+    public CacheSimulator policy(String name, IntFunction<ICache<Long, Long>> factory) {
+        policies.put(Objects.requireNonNull(name), Objects.requireNonNull(factory));
+        return this;
+    }
+
+    /**
+     * 用访问轨迹依次回放所有的缓存策略
+     *
+     * @param trace 访问轨迹
+     * @return 每个策略的回放结果
+     */
+    public List<Result> run(long[] trace) {
+        List<Result> results = new ArrayList<>(policies.size());
+        policies.forEach((name, factory) -> results.add(simulate(name, factory, trace)));
+        return results;
+    }
+
+    /**
+     * 把回放结果打印成表格
+     *
+     * @param results 回放结果
+     */
+    public static void print(List<Result> results) {
+        System.out.println(String.format("%-16s%12s%16s%16s", "policy", "hit rate", "ops/ms", "bytes/entry"));
+        results.forEach(System.out::println);
+    }
+
+    private Result simulate(String name, IntFunction<ICache<Long, Long>> factory, long[] trace) {
+        // 第一次测量会把类加载等一次性的分配也算进去, 所以测量两次, 取第二次的结果
+        bytesPerEntry(factory);
+        long bytesPerEntry = bytesPerEntry(factory);
+        ICache<Long, Long> cache = factory.apply(capacity);
+        long hits = 0;
+        long start = System.nanoTime();
+        for (long key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.set(key, key);
+            }
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        double hitRate = trace.length == 0 ? 0 : (double) hits / trace.length;
+        double throughput = trace.length * 1e6 / elapsed;
+        return new Result(name, hitRate, throughput, bytesPerEntry);
+    }
+
+    /**
+     * 创建一个新的缓存并写入capacity个条目, 用填充过程中当前线程在堆上分配的字节数, 加上新申请的堆外内存,
+     * 除以填充后缓存中实际还能查到的条目数, 估算每个条目占用的内存. 键和值本身(Long对象)也计算在内.
+     * 填充过程中不一定没有淘汰: 例如ConcurrentLRU每个分段的容量是 ceil(capacity / 16), 哈希不均匀时
+     * 个别分段在总数达到容量之前就开始淘汰, 所以不能直接除以capacity. 被淘汰的条目和哈希表扩容时丢弃的旧数组
+     * 占用的内存也算在了分配的字节数里, 会让结果略微偏大.
+     * 相比GC前后堆内存的差值, 这种方式不受GC时机和JIT对局部变量存活范围的优化影响, 结果是稳定的
+     */
+    private long bytesPerEntry(IntFunction<ICache<Long, Long>> factory) {
+        if (THREAD_MX_BEAN == null) {
+            return -1;
+        }
+        long threadId = Thread.currentThread().getId();
+        long heapBefore = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+        long directBefore = directMemoryUsed();
+        ICache<Long, Long> cache = factory.apply(capacity);
+        for (long i = 0; i < capacity; i++) {
+            // 从一个较大的数开始, 避免使用到Long的常量池
+            Long key = Long.MAX_VALUE - i;
+            cache.set(key, key);
+        }
+        long heap = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - heapBefore;
+        long direct = directMemoryUsed() - directBefore;
+        // 测量完内存以后再逐个查询, 统计实际留在缓存中的条目数, 同时保证测量时缓存不会被回收.
+        // ICache没有size(), 而且这里的查询发生在测量之后, 不影响分配的字节数
+        int size = 0;
+        for (long i = 0; i < capacity; i++) {
+            if (cache.get(Long.MAX_VALUE - i) != null) {
+                size++;
+            }
+        }
+        return Math.max(0, heap + direct) / Math.max(1, size);
+    }
+
+    /**
+     * 获取可以统计线程分配字节数的{@link com.sun.management.ThreadMXBean}, 当前JVM不支持时返回null
+     */
+    private static com.sun.management.ThreadMXBean allocationMXBean() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean hotSpotBean = (com.sun.management.ThreadMXBean) bean;
+                if (hotSpotBean.isThreadAllocatedMemorySupported()) {
+                    hotSpotBean.setThreadAllocatedMemoryEnabled(true);
+                    return hotSpotBean;
+                }
+            }
+        } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+            // 没有com.sun.management包或者不支持统计, 当作不可用处理
+        }
+        return null;
+    }
+
+    /**
+     * 当前已申请的堆外内存(direct ByteBuffer)字节数
+     */
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 单个策略的回放结果
+     */
+    public static class Result {
+        private final String policy;
+        private final double hitRate;
+
+        /**
+         * 每毫秒的操作数
+         */
+        private final double throughput;
+        private final long bytesPerEntry;
+
+        Result(String policy, double hitRate, double throughput, long bytesPerEntry) {
+            this.policy = policy;
+            this.hitRate = hitRate;
+            this.throughput = throughput;
+            this.bytesPerEntry = bytesPerEntry;
+        }
+
+        public String getPolicy() {
+            return policy;
+        }
+
+        public double getHitRate() {
+            return hitRate;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        /**
+         * @return 每个条目占用的字节数, 当前JVM不支持统计时返回-1
+         */
+        public long getBytesPerEntry() {
+            return bytesPerEntry;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-16s%11.2f%%%16.0f%16s", policy, hitRate * 100, throughput,
+                    bytesPerEntry < 0 ? "n/a" : String.valueOf(bytesPerEntry));
+        }
+    }
+
+    /**
+     * 把{@link OffHeapCache}适配成以long为键和值的缓存
+     */
+    private static class OffHeapLongCache implements ICache<Long, Long> {
+        private final OffHeapCache cache;
+
+        OffHeapLongCache(int capacity) {
+            // 槽头16字节, 键和值各8字节
+            this.cache = new OffHeapCache(capacity, 32);
+        }
+
+        @Override
+        public void set(Long key, Long value) {
+            cache.set(toBytes(key), toBytes(value));
+        }
+
+        @Override
+        public Long get(Long key) {
+            byte[] value = cache.get(toBytes(key));
+            return value == null ? null : ByteBuffer.wrap(value).getLong();
+        }
+
+        @Override
+        public Long remove(Long key) {
+            byte[] value = cache.remove(toBytes(key));
+            return value == null ? null : ByteBuffer.wrap(value).getLong();
+        }
+
+        private static byte[] toBytes(long l) {
+            return ByteBuffer.allocate(Long.BYTES).putLong(l).array();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.sym.algorithm.example.cache.simulator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 访问轨迹(trace)的生成工具, 一条访问轨迹就是按时间顺序排列的key
+ *
+ * @author shenyanming
+ * Created on 2021/2/8 10:30
+ */
+public class Traces {
+
+    private Traces() {
+    }
+
+    /**
+     * 服从Zipf分布的访问轨迹: 第i热门的key被访问的概率与 1/i^s 成正比, 少数key占据了大部分的访问,
+     * 这是线上缓存最常见的访问模式
+     *
+     * @param length   轨迹长度
+     * @param items    key的个数, 取值为[0, items)
+     * @param exponent 倾斜度s, 越大越集中, 常见取值为0.6~1.2
+     * @param seed     随机数种子
+     * @return 访问轨迹
+     */
+    public static long[] zipfian(int length, int items, double exponent, long seed) {
+        // 预先计算累积分布函数, 生成时通过二分查找定位, 每个key的生成耗时为 O(logn)
+        double[] cdf = new double[items];
+        double sum = 0;
+        for (int i = 0; i < items; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        Random random = new Random(seed);
+        long[] trace = new long[length];
+        for (int i = 0; i < length; i++) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            // 没有精确命中时, binarySearch返回 -(插入点) - 1
+            trace[i] = index >= 0 ? index : -index - 1;
+        }
+        return trace;
+    }
+
+    /**
+     * 顺序扫描的访问轨迹, 例如全表扫描、批量导出, 每个key只访问一次
+     *
+     * @param length 轨迹长度
+     * @param start  第一个key
+     * @return 访问轨迹
+     */
+    public static long[] scan(int length, long start) {
+        long[] trace = new long[length];
+        for (int i = 0; i < length; i++) {
+            trace[i] = start + i;
+        }
+        return trace;
+    }
+
+    /**
+     * 把多段访问轨迹随机交错在一起, 例如Zipf分布的正常流量中夹杂着扫描流量.
+     * 每一段内部的先后顺序保持不变
+     *
+     * @param seed   随机数种子
+     * @param traces 多段访问轨迹
+     * @return 访问轨迹
+     */
+    public static long[] interleave(long seed, long[]... traces) {
+        int total = 0;
+        for (long[] trace : traces) {
+            total += trace.length;
+        }
+        Random random = new Random(seed);
+        long[] result = new long[total];
+        int[] positions = new int[traces.length];
+        for (int i = 0; i < total; i++) {
+            // 按照剩余长度的比例选择下一段, 保证各段均匀地分布在整条轨迹中
+            int remaining = random.nextInt(total - i);
+            int t = 0;
+            while (remaining >= traces[t].length - positions[t]) {
+                remaining -= traces[t].length - positions[t];
+                t++;
+            }
+            result[i] = traces[t][positions[t]++];
+        }
+        return result;
+    }
+
+    /**
+     * 从文件中读取访问轨迹, 每行一个key, 空行会被忽略. 整数直接作为key, 其它字符串取64位哈希值作为key
+     *
+     * @param path 文件路径
+     * @return 访问轨迹
+     */
+    public static long[] file(Path path) {
+        long[] trace = new long[1024];
+        int size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (size == trace.length) {
+                    trace = Arrays.copyOf(trace, size << 1);
+                }
+                trace[size++] = parse(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取访问轨迹失败, path=" + path, e);
+        }
+        return Arrays.copyOf(trace, size);
+    }
+
+    private static long parse(String line) {
+        try {
+            return Long.parseLong(line);
+        } catch (NumberFormatException e) {
+            // FNV-1a 64位哈希
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < line.length(); i++) {
+                hash ^= line.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+}
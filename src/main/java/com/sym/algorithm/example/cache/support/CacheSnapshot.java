@@ -0,0 +1,263 @@
+package com.sym.algorithm.example.cache.support;
+
+import com.sym.algorithm.example.cache.ISnapshotCache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 缓存快照, 把缓存内容连同淘汰顺序导出到二进制文件, 重启时再加载回来, 避免每次发布后缓存都从零开始.
+ * <p>
+ * 读写文件都使用内存映射(mmap): 文件按窗口(默认64MB)映射到内存, 读写映射区域就相当于读写文件,
+ * 由操作系统负责把页缓存刷到磁盘, 省去了用户态缓冲区和内核之间的拷贝, 对于几个GB的缓存,
+ * 导出和加载的速度基本取决于磁盘的顺序读写速度.
+ * <p>
+ * 文件格式(大端序):
+ * <pre>
+ * [魔数(4字节)][版本号(4字节)][条目数(8字节)]
+ * [访问频率(4字节)][键长度(4字节)][键][值长度(4字节)][值]
+ * ......
+ * </pre>
+ * 条目按照淘汰顺序排列, 即最先被淘汰的在最前面, 恢复时按顺序写回就能还原淘汰顺序.
+ * <p>
+ * 导出时先写到同一目录下的临时文件并刷盘, 再原子地改名覆盖原来的快照, 导出过程中进程崩溃或者被杀掉,
+ * 原来的快照仍然完好, 下次启动依旧可以加载.
+ *
+ * @author shenyanming
+ * Created on 2021/2/5 11:20
+ */
+public class CacheSnapshot {
+
+    /**
+     * 魔数, 即"SYMC"的ASCII码
+     */
+    private static final int MAGIC = 0x53594D43;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * 默认的映射窗口大小
+     */
+    private static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+    private CacheSnapshot() {
+    }
+
+    /**
+     * 导出缓存快照, 已存在的文件会在导出成功后被原子地替换
+     *
+     * @param cache      缓存
+     * @param path       快照文件
+     * @param keyCodec   键的编解码器
+     * @param valueCodec 值的编解码器
+     * @return 导出的条目数
+     */
+    public static <K, V> long save(ISnapshotCache<K, V> cache, Path path, Codec<K> keyCodec, Codec<V> valueCodec) {
+        return save(cache, path, keyCodec, valueCodec, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * 导出缓存快照, 并指定映射窗口的大小
+     *
+     * @param windowSize 映射窗口的字节数
+     */
+    public static <K, V> long save(ISnapshotCache<K, V> cache, Path path, Codec<K> keyCodec, Codec<V> valueCodec,
+                                   int windowSize) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try {
+                long count = write(cache, tmp, keyCodec, valueCodec, windowSize);
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return count;
+            } finally {
+                // 导出成功时临时文件已经被改名了, 失败时把写了一半的临时文件删掉
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("导出缓存快照失败, path=" + path, e);
+        }
+    }
+
+    /**
+     * 把所有条目写到指定的文件中并刷盘
+     *
+     * @return 写入的条目数
+     */
+    private static <K, V> long write(ISnapshotCache<K, V> cache, Path path, Codec<K> keyCodec, Codec<V> valueCodec,
+                                     int windowSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedWriter writer = new MappedWriter(channel, windowSize);
+            // 先跳过文件头, 条目数要等写完所有条目才知道
+            writer.skip(HEADER_SIZE);
+            long[] count = new long[1];
+            cache.forEachEntry((key, value, frequency) -> {
+                byte[] keyBytes = keyCodec.encode(key);
+                byte[] valueBytes = valueCodec.encode(value);
+                writer.ensure(12 + keyBytes.length + valueBytes.length);
+                writer.buffer.putInt(frequency);
+                writer.buffer.putInt(keyBytes.length);
+                writer.buffer.put(keyBytes);
+                writer.buffer.putInt(valueBytes.length);
+                writer.buffer.put(valueBytes);
+                count[0]++;
+            });
+            long size = writer.finish();
+            // 映射窗口可能超出实际写入的大小, 把文件截断到实际大小, 再回头写文件头
+            channel.truncate(size);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(count[0]);
+            header.force();
+            channel.force(true);
+            return count[0];
+        }
+    }
+
+    /**
+     * 加载缓存快照, 按照文件中的顺序逐条恢复到缓存中
+     *
+     * @param cache      缓存
+     * @param path       快照文件
+     * @param keyCodec   键的编解码器
+     * @param valueCodec 值的编解码器
+     * @return 加载的条目数
+     */
+    public static <K, V> long load(ISnapshotCache<K, V> cache, Path path, Codec<K> keyCodec, Codec<V> valueCodec) {
+        return load(cache, path, keyCodec, valueCodec, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * 加载缓存快照, 并指定映射窗口的大小
+     *
+     * @param windowSize 映射窗口的字节数
+     */
+    public static <K, V> long load(ISnapshotCache<K, V> cache, Path path, Codec<K> keyCodec, Codec<V> valueCodec,
+                                   int windowSize) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedReader reader = new MappedReader(channel, windowSize);
+            reader.ensure(HEADER_SIZE);
+            if (reader.buffer.getInt() != MAGIC) {
+                throw new IllegalStateException("不是缓存快照文件, path=" + path);
+            }
+            int version = reader.buffer.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("不支持的快照版本: " + version);
+            }
+            long count = reader.buffer.getLong();
+            for (long i = 0; i < count; i++) {
+                reader.ensure(4);
+                int frequency = reader.buffer.getInt();
+                byte[] keyBytes = reader.readBytes();
+                byte[] valueBytes = reader.readBytes();
+                cache.restore(keyCodec.decode(keyBytes), valueCodec.decode(valueBytes), frequency);
+            }
+            return count;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("缓存快照文件不完整, path=" + path, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载缓存快照失败, path=" + path, e);
+        }
+    }
+
+    /**
+     * 按窗口映射文件的写入器, 当前窗口剩余空间不够时, 从当前位置开始映射下一个窗口
+     */
+    private static class MappedWriter {
+        final FileChannel channel;
+        final int windowSize;
+        MappedByteBuffer buffer;
+
+        /**
+         * 当前窗口在文件中的起始位置
+         */
+        long windowStart;
+
+        MappedWriter(FileChannel channel, int windowSize) throws IOException {
+            this.channel = channel;
+            this.windowSize = windowSize;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, windowSize);
+        }
+
+        void skip(int n) {
+            ensure(n);
+            buffer.position(buffer.position() + n);
+        }
+
+        void ensure(int n) {
+            if (buffer.remaining() >= n) {
+                return;
+            }
+            try {
+                windowStart += buffer.position();
+                buffer.force();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(windowSize, n));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * @return 实际写入的字节数
+         */
+        long finish() {
+            buffer.force();
+            return windowStart + buffer.position();
+        }
+    }
+
+    /**
+     * 按窗口映射文件的只读读取器
+     */
+    private static class MappedReader {
+        final FileChannel channel;
+        final int windowSize;
+        final long fileSize;
+        MappedByteBuffer buffer;
+        long windowStart;
+
+        MappedReader(FileChannel channel, int windowSize) throws IOException {
+            this.channel = channel;
+            this.windowSize = windowSize;
+            this.fileSize = channel.size();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(windowSize, fileSize));
+        }
+
+        void ensure(int n) {
+            if (buffer.remaining() >= n) {
+                return;
+            }
+            windowStart += buffer.position();
+            long size = Math.min(Math.max(windowSize, n), fileSize - windowStart);
+            if (size < n) {
+                throw new BufferUnderflowException();
+            }
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * 读取一个"长度 + 内容"格式的字节数组
+         */
+        byte[] readBytes() {
+            ensure(4);
+            int length = buffer.getInt();
+            if (length < 0) {
+                throw new IllegalStateException("快照文件损坏, 长度为负数: " + length);
+            }
+            ensure(length);
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.sym.algorithm.example.cache.support;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 编解码器, 负责缓存的键和值与字节数组之间的相互转换
+ *
+ * @author shenyanming
+ * Created on 2021/2/5 11:20
+ */
+public interface Codec<T> {
+
+    /**
+     * 编码
+     *
+     * @param t 对象
+     * @return 字节数组
+     */
+    byte[] encode(T t);
+
+    /**
+     * 解码
+     *
+     * @param bytes 字节数组
+     * @return 对象
+     */
+    T decode(byte[] bytes);
+
+    /**
+     * 字节数组本身, 不做任何转换
+     *
+     * @return codec
+     */
+    static Codec<byte[]> bytes() {
+        return new Codec<byte[]>() {
+            @Override
+            public byte[] encode(byte[] bytes) {
+                return bytes;
+            }
+
+            @Override
+            public byte[] decode(byte[] bytes) {
+                return bytes;
+            }
+        };
+    }
+
+    /**
+     * UTF-8编码的字符串
+     *
+     * @return codec
+     */
+    static Codec<String> utf8() {
+        return new Codec<String>() {
+            @Override
+            public byte[] encode(String s) {
+                return s.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(byte[] bytes) {
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
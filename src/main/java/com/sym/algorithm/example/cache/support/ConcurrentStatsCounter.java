@@ -0,0 +1,67 @@
+package com.sym.algorithm.example.cache.support;
+
+import com.sym.algorithm.example.cache.CacheStats;
+import com.sym.algorithm.example.cache.StatsCounter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的统计信息记录器.
+ * <p>
+ * 使用{@link LongAdder}而不是{@link java.util.concurrent.atomic.AtomicLong}计数: LongAdder内部把
+ * 计数分散到多个cell上(分段/条带化), 不同线程优先更新不同的cell, 只有在读取时才把所有cell加起来.
+ * 统计信息的特点正是"写多读少", 所以在高并发下它比所有线程CAS同一个变量要快得多.
+ *
+ * @author shenyanming
+ * Created on 2021/2/3 16:05
+ */
+public class ConcurrentStatsCounter implements StatsCounter {
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+
+    @Override
+    public void recordHits(int count) {
+        hitCount.add(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        missCount.add(count);
+    }
+
+    @Override
+    public void recordEviction() {
+        evictionCount.increment();
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        loadSuccessCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        loadFailureCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    /**
+     * 读取快照时不会阻塞写入, 所以在并发写入时各个计数之间不保证是同一时刻的值
+     */
+    @Override
+    public CacheStats snapshot() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(),
+                loadSuccessCount.sum(), loadFailureCount.sum(), totalLoadTime.sum());
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
@@ -0,0 +1,152 @@
+package com.sym.algorithm.example.cache.support;
+
+/**
+ * 基于 Count-Min Sketch 的访问频率估算器, 用作 TinyLFU 的准入过滤器.
+ * <p>
+ * Count-Min Sketch 由多行计数器组成, 每一行用一个不同的哈希函数定位计数器, 增加频率时每一行
+ * 对应的计数器都加1, 查询频率时取所有行中的最小值. 由于哈希冲突只会让计数变大, 所以取最小值
+ * 可以尽可能接近真实值.
+ * <p>
+ * 为了节省空间, 这里做了两个优化:
+ * 1.每个计数器只有4位, 最大值为15, 一个long可以打包16个计数器. 对于准入判断来说,
+ * 只需要比较"谁更热", 不需要精确的次数;
+ * 2.4行计数器并不各自占用一个数组, 而是先根据哈希值选出long中的一组(4个)计数器, 4行分别落在
+ * 数组的4个位置上, 每个元素的元数据大约是8个字节.
+ * <p>
+ * 另外, 当累计的增加次数达到采样大小时, 所有计数器减半(老化), 让历史上的热点数据逐渐冷却.
+ *
+ * @author shenyanming
+ * Created on 2021/1/22 10:05
+ */
+public class FrequencySketch {
+
+    /**
+     * 4个哈希函数使用的种子
+     */
+    private static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    /**
+     * 减半时用于清除每个计数器最高位的掩码, 二进制为 0111 0111 ... 0111
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * 取每个计数器最低位的掩码, 二进制为 0001 0001 ... 0001
+     */
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table;
+    private final int tableMask;
+
+    /**
+     * 采样大小, 增加次数达到它时触发老化
+     */
+    private final int sampleSize;
+
+    /**
+     * 当前累计的增加次数
+     */
+    private int size;
+
+    /**
+     * 构造频率估算器
+     *
+     * @param maximumSize 缓存的最大容量
+     */
+    public FrequencySketch(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("容量必须大于0, 当前值为: " + maximumSize);
+        }
+        int tableSize = ceilingPowerOfTwo(maximumSize);
+        this.table = new long[tableSize];
+        this.tableMask = tableSize - 1;
+        this.sampleSize = 10 * maximumSize < 0 ? Integer.MAX_VALUE : 10 * maximumSize;
+    }
+
+    /**
+     * 估算元素的访问频率
+     *
+     * @param e 元素
+     * @return 频率, 取值范围[0, 15]
+     */
+    public int frequency(Object e) {
+        int hash = spread(e.hashCode());
+        // 选出long中的第几组计数器, 每组4个, 每个4位
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 将元素的访问频率加1, 计数器达到15以后不再增加
+     *
+     * @param e 元素
+     */
+    public void increment(Object e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            added |= incrementAt(index, start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 将table[i]中的第j个计数器加1
+     *
+     * @return true-计数器没有溢出, 增加成功
+     */
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xFL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 老化: 所有计数器减半. 因为右移会丢失奇数计数器的最低位, 所以size要额外减去这部分的误差
+     */
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    /**
+     * 第i个哈希函数定位到的数组下标
+     */
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    /**
+     * 对元素原始的哈希码再做一次扰动, 避免低质量的hashCode()导致计数器分布不均
+     */
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return x <= 1 ? 1 : Integer.highestOneBit(x - 1) << 1;
+    }
+}
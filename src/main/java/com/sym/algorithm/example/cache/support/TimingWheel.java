@@ -0,0 +1,184 @@
+package com.sym.algorithm.example.cache.support;
+
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮, 用于回收过期的缓存.
+ * <p>
+ * 时间轮就像钟表: 一个轮子有64个格子(桶), 指针每走一格(一个tick, 约1毫秒)就把对应格子里的
+ * 定时任务全部取出来处理. 单层时间轮只能表示64个tick以内的任务, 所以再叠加几层:
+ * 第0层每格1个tick, 第1层每格64个tick, 第2层每格64*64个tick ...... 共5层, 可以覆盖约12天.
+ * <p>
+ * 任务按照"离过期还有多久"放到合适的层: 越远的任务放在越高的层, 每当高层的指针走过一格,
+ * 就把这一格里的任务重新调度(降级)到更低的层, 直到它在第0层过期. 每个任务最多被降级
+ * {@value #LEVELS}次, 所以调度、取消、过期的均摊时间复杂度都是 O(1), 不需要扫描所有任务.
+ *
+ * @author shenyanming
+ * Created on 2021/1/25 9:40
+ */
+public class TimingWheel<T extends TimingWheel.Timeout> {
+
+    /**
+     * 一个tick为 2^20 纳秒, 约1.05毫秒
+     */
+    private static final int TICK_SHIFT = 20;
+    private static final long TICK_MASK = (1L << TICK_SHIFT) - 1;
+
+    /**
+     * 每层轮子有 2^6 = 64 个桶
+     */
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /**
+     * 时间轮的层数
+     */
+    private static final int LEVELS = 5;
+
+    /**
+     * 所有层能表示的最大tick跨度
+     */
+    private static final long MAX_SPAN = 1L << (WHEEL_BITS * LEVELS);
+
+    /**
+     * 每个桶都是一个带哨兵节点的双向循环链表
+     */
+    private final Timeout[][] wheels;
+
+    /**
+     * 当前指针指向的tick
+     */
+    private long currentTick;
+
+    /**
+     * 构造时间轮
+     *
+     * @param nowNanos 当前时间, 单位纳秒
+     */
+    public TimingWheel(long nowNanos) {
+        this.currentTick = nowNanos >> TICK_SHIFT;
+        this.wheels = new Timeout[LEVELS][WHEEL_SIZE];
+        for (int i = 0; i < LEVELS; i++) {
+            for (int j = 0; j < WHEEL_SIZE; j++) {
+                Timeout sentinel = new Timeout();
+                sentinel.prev = sentinel.next = sentinel;
+                wheels[i][j] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * 按照{@link Timeout#getDeadline()}调度任务, 如果任务已经在时间轮中, 会先把它取消
+     *
+     * @param timeout 定时任务
+     */
+    public void schedule(T timeout) {
+        cancel(timeout);
+        long expireTick = expireTick(timeout.deadline);
+        // 已经过期的任务放到下一个tick, 保证指针一走就能处理它
+        long delta = Math.max(expireTick - currentTick, 1);
+        // 超出最高层范围的任务先放在最高层的最远处, 等指针走到那里再重新调度
+        delta = Math.min(delta, MAX_SPAN - 1);
+        expireTick = currentTick + delta;
+        int level = 0;
+        while (delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        int bucket = (int) ((expireTick >> (WHEEL_BITS * level)) & WHEEL_MASK);
+        link(wheels[level][bucket], timeout);
+    }
+
+    /**
+     * 从时间轮中移除任务, 任务不在时间轮中时什么也不做
+     *
+     * @param timeout 定时任务
+     */
+    public void cancel(T timeout) {
+        if (timeout.next == null) {
+            return;
+        }
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = timeout.next = null;
+    }
+
+    /**
+     * 推进指针到当前时间, 处理所有走过的桶: 到期的任务交给{@code expiry}, 未到期的任务降级到低层
+     *
+     * @param nowNanos 当前时间, 单位纳秒
+     * @param expiry   过期任务的处理器
+     */
+    @SuppressWarnings("unchecked")
+    public void advance(long nowNanos, Consumer<T> expiry) {
+        long previousTick = currentTick;
+        long nowTick = nowNanos >> TICK_SHIFT;
+        if (nowTick <= previousTick) {
+            return;
+        }
+        currentTick = nowTick;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = WHEEL_BITS * level;
+            long previousIndex = previousTick >> shift;
+            long currentIndex = nowTick >> shift;
+            if (previousIndex == currentIndex) {
+                // 低层的指针都没有走完一圈, 更高层的指针一定也没有动
+                break;
+            }
+            long steps = Math.min(currentIndex - previousIndex, WHEEL_SIZE);
+            for (long i = 1; i <= steps; i++) {
+                Timeout sentinel = wheels[level][(int) ((previousIndex + i) & WHEEL_MASK)];
+                // 先把整个桶摘下来, 避免处理过程中重新调度的任务又回到这个桶
+                Timeout node = sentinel.next;
+                sentinel.prev = sentinel.next = sentinel;
+                while (node != sentinel) {
+                    Timeout next = node.next;
+                    node.prev = node.next = null;
+                    if (expireTick(node.deadline) <= nowTick) {
+                        expiry.accept((T) node);
+                    } else {
+                        schedule((T) node);
+                    }
+                    node = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * 过期时间所在的tick, 向上取整: 指针走到这个tick时, 过期时间一定已经到了,
+     * 不会比{@link Timeout#getDeadline()}提前最多一个tick回收任务
+     */
+    private static long expireTick(long deadline) {
+        long tick = deadline >> TICK_SHIFT;
+        return (deadline & TICK_MASK) == 0 ? tick : tick + 1;
+    }
+
+    private static void link(Timeout sentinel, Timeout timeout) {
+        Timeout last = sentinel.prev;
+        timeout.prev = last;
+        timeout.next = sentinel;
+        last.next = timeout;
+        sentinel.prev = timeout;
+    }
+
+    /**
+     * 时间轮中的定时任务, 需要放入时间轮的对象继承它即可, 这样就不需要为每个任务额外创建包装对象
+     */
+    public static class Timeout {
+        /**
+         * 过期时间, 单位纳秒
+         */
+        long deadline;
+        Timeout prev;
+        Timeout next;
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public void setDeadline(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
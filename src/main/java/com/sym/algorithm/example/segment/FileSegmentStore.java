@@ -0,0 +1,109 @@
+package com.sym.algorithm.example.segment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * 基于本地文件的号段存储, 用来在没有数据库的环境下代替号段表.
+ * <p>
+ * 每个业务对应目录下的一个文件, 内容是这个业务已经分配出去的最大ID(文本格式, 方便人工查看和修改).
+ * 业务标识直接作为文件名, 所以不能包含路径.
+ * 租用号段时先用{@link FileLock}锁住文件, 读出最大ID, 加上步长后写回并刷盘, 然后才把号段交给调用方,
+ * 这样即使进程崩溃重启, 或者同一台机器上有多个进程共用这个目录, 也不会分配出重复的ID;
+ * 代价是崩溃时没有用完的号段会被浪费, ID不连续.
+ *
+ * @author shenyanming
+ * Created on 2021/2/12 10:30
+ */
+public class FileSegmentStore implements ISegmentStore {
+
+    private static final String SUFFIX = ".segment";
+
+    /**
+     * 文件锁是进程级别的, 同一个JVM中重复锁住同一个文件会抛出{@link java.nio.channels.OverlappingFileLockException},
+     * 所以进程内还需要一把锁. 同一个目录可能被多个实例共用, 这把锁必须是静态的
+     */
+    private static final Object JVM_LOCK = new Object();
+
+    private final Path directory;
+
+    public FileSegmentStore(Path directory) {
+        this.directory = Objects.requireNonNull(directory, "目录不能为空");
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建号段目录失败, directory=" + directory, e);
+        }
+    }
+
+    @Override
+    public Segment lease(String bizTag, int step) {
+        Objects.requireNonNull(bizTag, "业务标识不能为空");
+        if (step <= 0) {
+            throw new IllegalArgumentException("号段长度必须大于0, 当前值为: " + step);
+        }
+        String fileName = bizTag + SUFFIX;
+        Path path = directory.resolve(fileName);
+        // 业务标识会拼进文件名, 带有路径分隔符、".."或者是绝对路径时, 解析出来的文件名就和它不一样了,
+        // 拒绝这样的业务标识, 防止读写到目录之外的文件. 目录可能是Paths.get("")这样没有父目录的相对路径, 所以只比较文件名
+        if (bizTag.isEmpty() || !path.getFileName().toString().equals(fileName)) {
+            throw new IllegalArgumentException("业务标识不能为空, 也不能包含路径, 当前值为: " + bizTag);
+        }
+        synchronized (JVM_LOCK) {
+            return lease(path, step);
+        }
+    }
+
+    private static Segment lease(Path path, int step) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                long maxId = read(channel, path);
+                long newMaxId = Math.addExact(maxId, step);
+                write(channel, newMaxId);
+                return new Segment(maxId, newMaxId);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("租用号段失败, path=" + path, e);
+        }
+    }
+
+    private static long read(FileChannel channel, Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        String content = new String(buffer.array(), StandardCharsets.US_ASCII).trim();
+        if (content.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(content);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("号段文件损坏, path=" + path + ", content=" + content, e);
+        }
+    }
+
+    private static void write(FileChannel channel, long maxId) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((maxId + "\n").getBytes(StandardCharsets.US_ASCII));
+        // 最大ID只增不减, 新内容不会比旧内容短, 先覆盖再截断, 不会出现文件被清空的中间状态
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        channel.truncate(buffer.limit());
+        channel.force(true);
+    }
+}
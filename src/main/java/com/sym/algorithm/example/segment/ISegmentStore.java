@@ -0,0 +1,20 @@
+package com.sym.algorithm.example.segment;
+
+/**
+ * 号段的存储, 记录每个业务已经分配出去的最大ID. 实现必须保证同一个业务的号段不会重叠,
+ * 即使有多个进程同时租用号段, 通常由数据库的行锁或者文件锁保证.
+ *
+ * @author shenyanming
+ * Created on 2021/2/12 10:05
+ */
+public interface ISegmentStore {
+
+    /**
+     * 为指定的业务租用一个新的号段, 号段中的ID从此不会再分配给其它的租用者
+     *
+     * @param bizTag 业务标识
+     * @param step   号段的长度
+     * @return 新的号段
+     */
+    Segment lease(String bizTag, int step);
+}
@@ -0,0 +1,65 @@
+package com.sym.algorithm.example.segment;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 号段, 即一段左闭右开的连续ID区间[start, end), 多个线程通过CAS从中分配ID
+ *
+ * @author shenyanming
+ * Created on 2021/2/12 10:10
+ */
+public final class Segment {
+    private final long start;
+    private final long end;
+
+    /**
+     * 下一个要分配的ID, 号段用完以后会继续增长, 超过end的值都是无效的
+     */
+    private final AtomicLong cursor;
+
+    public Segment(long start, long end) {
+        if (start < 0 || start >= end) {
+            throw new IllegalArgumentException("号段必须满足 0 <= start < end, 当前值为: [" + start + ", " + end + ")");
+        }
+        this.start = start;
+        this.end = end;
+        this.cursor = new AtomicLong(start);
+    }
+
+    /**
+     * 分配一个ID
+     *
+     * @return ID, 号段用完时返回-1
+     */
+    public long next() {
+        long id = cursor.getAndIncrement();
+        return id < end ? id : -1;
+    }
+
+    /**
+     * @return 已经分配出去的ID个数
+     */
+    public long used() {
+        return Math.min(cursor.get(), end) - start;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return 号段的长度
+     */
+    public long size() {
+        return end - start;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + "), used=" + used();
+    }
+}
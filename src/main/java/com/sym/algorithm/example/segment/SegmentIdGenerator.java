@@ -0,0 +1,133 @@
+package com.sym.algorithm.example.segment;
+
+import com.sym.algorithm.example.snowflake.IIdGenerator;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 号段模式的ID生成器, 是依赖时钟的雪花算法之外的另一种选择.
+ * <p>
+ * 每次从{@link ISegmentStore}租用一段连续的ID(号段)放在内存中, 分配ID时只是对号段的游标做一次CAS,
+ * 只有号段用完时才需要访问存储. 生成的ID是递增的整数, 不依赖时钟, 也就不存在时钟回拨的问题,
+ * 代价是ID是连续的, 会暴露业务量.
+ * <p>
+ * 双缓冲: 同时持有当前号段和下一个号段. 当前号段的使用量达到指定的比例时, 就在后台线程中异步租用下一个号段,
+ * 当前号段用完时直接切换过去. 只要租用号段的耗时小于消耗剩余ID的时间, {@link #nextID()}就永远不会阻塞在存储上;
+ * 只有存储太慢或者不可用、预取没有及时完成时, 切换号段的线程才需要等待.
+ *
+ * @author shenyanming
+ * Created on 2021/2/12 11:00
+ */
+public class SegmentIdGenerator implements IIdGenerator {
+
+    /**
+     * 默认在当前号段用掉20%时预取下一个号段
+     */
+    private static final double DEFAULT_PREFETCH_RATIO = 0.2;
+
+    private final ISegmentStore store;
+    private final String bizTag;
+    private final int step;
+    private final Executor executor;
+
+    /**
+     * 当前号段的使用量达到这个值时开始预取
+     */
+    private final long prefetchThreshold;
+
+    private volatile Segment current;
+
+    /**
+     * 预取中或者已经预取好的下一个号段, 为null表示还没有开始预取
+     */
+    private volatile CompletableFuture<Segment> next;
+
+    public SegmentIdGenerator(ISegmentStore store, String bizTag, int step) {
+        this(store, bizTag, step, DEFAULT_PREFETCH_RATIO, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 构造号段模式的ID生成器, 构造时会同步租用第一个号段
+     *
+     * @param store         号段的存储
+     * @param bizTag        业务标识
+     * @param step          每次租用的号段长度
+     * @param prefetchRatio 当前号段的使用比例达到这个值时预取下一个号段, 取值范围[0, 1]
+     * @param executor      执行预取的线程池
+     */
+    public SegmentIdGenerator(ISegmentStore store, String bizTag, int step, double prefetchRatio, Executor executor) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("号段长度必须大于0, 当前值为: " + step);
+        }
+        if (prefetchRatio < 0 || prefetchRatio > 1) {
+            throw new IllegalArgumentException("预取比例必须在[0, 1]之间, 当前值为: " + prefetchRatio);
+        }
+        this.store = Objects.requireNonNull(store, "号段存储不能为空");
+        this.bizTag = Objects.requireNonNull(bizTag, "业务标识不能为空");
+        this.executor = Objects.requireNonNull(executor, "线程池不能为空");
+        this.step = step;
+        this.prefetchThreshold = (long) (step * prefetchRatio);
+        this.current = store.lease(bizTag, step);
+    }
+
+    @Override
+    public long nextID() {
+        while (true) {
+            Segment segment = current;
+            long id = segment.next();
+            if (id >= 0) {
+                if (next == null && segment.used() >= prefetchThreshold) {
+                    prefetch();
+                }
+                return id;
+            }
+            switchSegment(segment);
+        }
+    }
+
+    /**
+     * 异步租用下一个号段, 同一时刻只会有一个预取任务
+     */
+    private void prefetch() {
+        synchronized (this) {
+            if (next != null) {
+                return;
+            }
+            next = CompletableFuture.supplyAsync(() -> store.lease(bizTag, step), executor);
+        }
+    }
+
+    /**
+     * 当前号段用完了, 切换到下一个号段. 多个线程同时发现号段用完时, 只有一个线程真正执行切换
+     *
+     * @param exhausted 已经用完的号段
+     */
+    private synchronized void switchSegment(Segment exhausted) {
+        if (current != exhausted) {
+            // 其它线程已经切换过了
+            return;
+        }
+        CompletableFuture<Segment> future = next;
+        if (future == null) {
+            // 号段太小或者消耗太快, 还没来得及预取就已经用完了, 只能同步租用
+            future = CompletableFuture.completedFuture(store.lease(bizTag, step));
+        }
+        try {
+            current = future.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("租用号段失败, bizTag=" + bizTag, e.getCause());
+        } finally {
+            // 预取失败时也要清空, 下一次调用会重新预取
+            next = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentIdGenerator{bizTag=" + bizTag + ", current=" + current + ", next=" + next + '}';
+    }
+}
@@ -0,0 +1,98 @@
+package com.sym.algorithm.example.snowflake;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁的雪花算法, ID的位布局和{@link SymSnowFlake}完全一样.
+ * <p>
+ * {@link SymSnowFlake#nextID()}是synchronized的, 所有生成ID的线程都要排队竞争同一个监视器锁.
+ * 雪花算法真正需要互斥修改的状态只有两个: 上一次的时间戳和序列号, 这里把它们拼成一个long:
+ * <pre>
+ * 0      00000.....000000   000000000000
+ * 高位补0   41位表示时间戳     12位表示序列号
+ * </pre>
+ * (以默认的{@link SnowFlakeLayout}为例, 时间戳是相对于纪元的毫秒数)
+ * 放在一个{@link AtomicLong}中, 每个线程读出旧状态, 计算出新状态后通过CAS写回, CAS成功的线程
+ * 就独占了新状态对应的ID, 失败的线程重新读取再试一次. 由于时间戳在高位, 状态值本身就是单调递增的,
+ * 生成的ID也就和加锁版本一样单调递增.
+ *
+ * @author shenyanming
+ * Created on 2021/2/9 10:10
+ */
+public class AtomicSnowFlake implements IIdGenerator {
+
+    private final SnowFlakeLayout layout;
+    private final int serialNumberBits;
+    private final long maxSerialNumber;
+
+    /**
+     * 数据中心和机器编码在ID中对应的位, 构造时就计算好, 生成ID时直接拼接
+     */
+    private final long workerBits;
+
+    /**
+     * 高位是上一次生成ID时的时间戳(相对于纪元), 低位是序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public AtomicSnowFlake(long dataCenterId, long machineCode) {
+        this(SnowFlakeLayout.DEFAULT, dataCenterId, machineCode);
+    }
+
+    public AtomicSnowFlake(SnowFlakeLayout layout, long dataCenterId, long machineCode) {
+        this.layout = Objects.requireNonNull(layout, "位布局不能为空");
+        this.serialNumberBits = layout.getSerialNumberBits();
+        this.maxSerialNumber = layout.getMaxSerialNumber();
+        this.workerBits = layout.composeWorker(dataCenterId, machineCode);
+    }
+
+    /**
+     * 获取分布式唯一性ID
+     */
+    @Override
+    public long nextID() {
+        while (true) {
+            // 必须先读状态再读时钟: 反过来的话, 读时钟和读状态之间别的线程可能已经用更新的时间戳
+            // 生成了ID, 就会被误判为时钟回拨
+            long current = state.get();
+            long lastTimeStamp = current >>> serialNumberBits;
+            long nowTimeStamp = System.currentTimeMillis() - layout.getEpoch();
+            if (nowTimeStamp < lastTimeStamp) {
+                throw new RuntimeException("系统时间被后退,拒绝生成id");
+            }
+            long next;
+            if (nowTimeStamp > lastTimeStamp) {
+                // 进入新的毫秒, 序列号从0开始
+                next = nowTimeStamp << serialNumberBits;
+            } else if ((current & maxSerialNumber) != maxSerialNumber) {
+                // 同一毫秒内, 序列号加1即可
+                next = current + 1;
+            } else {
+                // 这一毫秒的序列号已经用完, 等到下一毫秒再重新竞争, 等待期间不修改状态
+                waitUntilAfter(lastTimeStamp);
+                continue;
+            }
+            if (state.compareAndSet(current, next)) {
+                return layout.composeTimeStamp((next >>> serialNumberBits) + layout.getEpoch())
+                        | workerBits
+                        | next & maxSerialNumber;
+            }
+        }
+    }
+
+    /**
+     * 获取ID的位布局，可以用来解析ID
+     *
+     * @return layout
+     */
+    public SnowFlakeLayout getLayout() {
+        return layout;
+    }
+
+    private void waitUntilAfter(long timeStamp) {
+        while (System.currentTimeMillis() - layout.getEpoch() <= timeStamp) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.sym.algorithm.example.snowflake;
+
+import java.util.Objects;
+
+/**
+ * 按线程缓冲的ID生成器.
+ * <p>
+ * 每个线程从底层生成器一次性批量获取一段ID放在自己的{@link ThreadLocal}缓冲区中, 之后逐个分发,
+ * 缓冲区用完才再次访问底层生成器. 分发ID时只读写当前线程私有的数组和下标, 没有任何共享内存的写操作,
+ * 线程之间的竞争从每个ID一次降低到每个缓冲区一次.
+ * <p>
+ * 代价是: 只保证同一个线程内的ID是递增的, 不同线程之间的ID不再按生成的先后顺序排列;
+ * 线程结束时缓冲区中没有用完的ID会被浪费. 另外底层使用{@link SymSnowFlake}时, 批量获取会在序列号用完后
+ * 借用未来的毫秒数, 但最多超前系统时间maxLeadMillis毫秒(默认100毫秒). 持续超过每毫秒4096个ID的速率时,
+ * 借满以后的每次批量获取都要按等待策略等系统时间追上来, 正好用完缓冲区的那次调用会因此卡顿,
+ * 整体吞吐量最终被限制在每毫秒4096个ID.
+ *
+ * @author shenyanming
+ * Created on 2021/2/10 15:20
+ */
+public class BufferedIdGenerator implements IIdGenerator {
+
+    /**
+     * 默认每个线程缓冲的ID个数
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final IIdGenerator delegate;
+    private final ThreadLocal<Buffer> buffers;
+
+    public BufferedIdGenerator(IIdGenerator delegate) {
+        this(delegate, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 构造按线程缓冲的ID生成器
+     *
+     * @param delegate   底层的生成器, 必须是线程安全的
+     * @param bufferSize 每个线程一次获取的ID个数
+     */
+    public BufferedIdGenerator(IIdGenerator delegate, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("缓冲区大小必须大于0, 当前值为: " + bufferSize);
+        }
+        this.delegate = Objects.requireNonNull(delegate, "底层生成器不能为空");
+        this.buffers = ThreadLocal.withInitial(() -> new Buffer(bufferSize));
+    }
+
+    @Override
+    public long nextID() {
+        Buffer buffer = buffers.get();
+        if (buffer.position == buffer.ids.length) {
+            delegate.nextIDs(buffer.ids);
+            buffer.position = 0;
+        }
+        return buffer.ids[buffer.position++];
+    }
+
+    /**
+     * 线程私有的缓冲区
+     */
+    private static class Buffer {
+        final long[] ids;
+
+        /**
+         * 下一个要分发的ID的下标, 初始时等于数组长度, 表示缓冲区是空的
+         */
+        int position;
+
+        Buffer(int size) {
+            this.ids = new long[size];
+            this.position = size;
+        }
+    }
+}
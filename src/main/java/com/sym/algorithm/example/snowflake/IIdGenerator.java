@@ -0,0 +1,30 @@
+package com.sym.algorithm.example.snowflake;
+
+/**
+ * 分布式唯一性ID生成器
+ *
+ * @author shenyanming
+ * Created on 2021/2/9 10:05
+ */
+public interface IIdGenerator {
+
+    /**
+     * 获取下一个ID, 同一个生成器返回的ID是唯一且递增的
+     *
+     * @return ID
+     */
+    long nextID();
+
+    /**
+     * 批量获取ID, 填满整个数组. 默认逐个调用{@link #nextID()}, 实现类可以一次性预留一段ID
+     *
+     * @param dst 存放ID的数组
+     * @return dst
+     */
+    default long[] nextIDs(long[] dst) {
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = nextID();
+        }
+        return dst;
+    }
+}
@@ -0,0 +1,49 @@
+package com.sym.algorithm.example.snowflake;
+
+import java.time.Instant;
+
+/**
+ * 雪花算法ID还原出来的各个组成部分
+ *
+ * @author shenyanming
+ * Created on 2021/2/11 10:40
+ * @see SnowFlakeLayout#decode(long)
+ */
+public final class SnowFlakeId {
+    private final long timeStamp;
+    private final long dataCenter;
+    private final long machineCode;
+    private final long serialNumber;
+
+    SnowFlakeId(long timeStamp, long dataCenter, long machineCode, long serialNumber) {
+        this.timeStamp = timeStamp;
+        this.dataCenter = dataCenter;
+        this.machineCode = machineCode;
+        this.serialNumber = serialNumber;
+    }
+
+    /**
+     * @return 生成ID时的毫秒时间戳
+     */
+    public long getTimeStamp() {
+        return timeStamp;
+    }
+
+    public long getDataCenter() {
+        return dataCenter;
+    }
+
+    public long getMachineCode() {
+        return machineCode;
+    }
+
+    public long getSerialNumber() {
+        return serialNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "SnowFlakeId{timeStamp=" + Instant.ofEpochMilli(timeStamp) + ", dataCenter=" + dataCenter
+                + ", machineCode=" + machineCode + ", serialNumber=" + serialNumber + '}';
+    }
+}
@@ -0,0 +1,213 @@
+package com.sym.algorithm.example.snowflake;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 雪花算法ID的位布局, 决定了时间戳、数据中心、机器编码和序列号各占多少位, 以及时间戳的起始时间(纪元).
+ * 从高位到低位依次为:
+ * <pre>
+ * [符号位, 固定为0][时间戳][数据中心][机器编码][序列号]
+ * </pre>
+ * 默认布局为41/5/5/12, 纪元为2019-01-01 00:00:00(+8). 所有字段的位数之和不能超过63,
+ * 剩下的高位补0, 保证ID是正数. 机器较多时可以增加机器编码的位数, 单机并发高时可以增加序列号的位数,
+ * 代价是时间戳能表示的年限变短(41位大约是69年).
+ * <p>
+ * 同一个布局生成的ID可以通过{@link #decode(long)}还原出各个组成部分.
+ *
+ * @author shenyanming
+ * Created on 2021/2/11 10:15
+ */
+public final class SnowFlakeLayout {
+
+    /**
+     * 默认的布局
+     */
+    public static final SnowFlakeLayout DEFAULT = builder().build();
+
+    private final int timeStampBits;
+    private final int dataCenterBits;
+    private final int machineCodeBits;
+    private final int serialNumberBits;
+    private final long epoch;
+
+    private final long maxTimeStamp;
+    private final long maxDataCenter;
+    private final long maxMachineCode;
+    private final long maxSerialNumber;
+
+    private final int machineCodeLeftMove;
+    private final int dataCenterLeftMove;
+    private final int timeStampLeftMove;
+
+    private SnowFlakeLayout(Builder builder) {
+        this.timeStampBits = builder.timeStampBits;
+        this.dataCenterBits = builder.dataCenterBits;
+        this.machineCodeBits = builder.machineCodeBits;
+        this.serialNumberBits = builder.serialNumberBits;
+        this.epoch = builder.epoch;
+        this.maxTimeStamp = ~(-1L << timeStampBits);
+        this.maxDataCenter = ~(-1L << dataCenterBits);
+        this.maxMachineCode = ~(-1L << machineCodeBits);
+        this.maxSerialNumber = ~(-1L << serialNumberBits);
+        this.machineCodeLeftMove = serialNumberBits;
+        this.dataCenterLeftMove = machineCodeLeftMove + machineCodeBits;
+        this.timeStampLeftMove = dataCenterLeftMove + dataCenterBits;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 组装ID
+     *
+     * @param timeStamp    毫秒时间戳(不是相对于纪元的)
+     * @param dataCenter   数据中心
+     * @param machineCode  机器编码
+     * @param serialNumber 序列号
+     * @return ID
+     */
+    public long compose(long timeStamp, long dataCenter, long machineCode, long serialNumber) {
+        return composeTimeStamp(timeStamp) | composeWorker(dataCenter, machineCode) | serialNumber;
+    }
+
+    /**
+     * 时间戳在ID中对应的位
+     *
+     * @param timeStamp 毫秒时间戳(不是相对于纪元的)
+     * @return 时间戳左移到正确位置后的值
+     */
+    public long composeTimeStamp(long timeStamp) {
+        long elapsed = timeStamp - epoch;
+        if (elapsed < 0 || elapsed > maxTimeStamp) {
+            throw new IllegalStateException("时间戳超出了" + timeStampBits + "位能表示的范围,当前值为：" + timeStamp);
+        }
+        return elapsed << timeStampLeftMove;
+    }
+
+    /**
+     * 数据中心和机器编码在ID中对应的位, 同一个生成器是固定的, 可以预先计算好
+     *
+     * @param dataCenter  数据中心
+     * @param machineCode 机器编码
+     * @return 数据中心和机器编码左移到正确位置后的值
+     */
+    public long composeWorker(long dataCenter, long machineCode) {
+        if (dataCenter < 0 || dataCenter > maxDataCenter) {
+            throw new IllegalArgumentException("数据中心ID只允许在[0," + maxDataCenter + "]之间,当前值为：" + dataCenter);
+        }
+        if (machineCode < 0 || machineCode > maxMachineCode) {
+            throw new IllegalArgumentException("机器编码只允许在[0," + maxMachineCode + "]之间,当前值为：" + machineCode);
+        }
+        return dataCenter << dataCenterLeftMove | machineCode << machineCodeLeftMove;
+    }
+
+    /**
+     * 把ID还原成各个组成部分
+     *
+     * @param id 使用这个布局生成的ID
+     * @return 组成部分
+     */
+    public SnowFlakeId decode(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID不能是负数,当前值为：" + id);
+        }
+        return new SnowFlakeId(
+                (id >>> timeStampLeftMove & maxTimeStamp) + epoch,
+                id >>> dataCenterLeftMove & maxDataCenter,
+                id >>> machineCodeLeftMove & maxMachineCode,
+                id & maxSerialNumber);
+    }
+
+    public int getTimeStampBits() {
+        return timeStampBits;
+    }
+
+    public int getDataCenterBits() {
+        return dataCenterBits;
+    }
+
+    public int getMachineCodeBits() {
+        return machineCodeBits;
+    }
+
+    public int getSerialNumberBits() {
+        return serialNumberBits;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getMaxSerialNumber() {
+        return maxSerialNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "SnowFlakeLayout{timeStamp=" + timeStampBits + ", dataCenter=" + dataCenterBits
+                + ", machineCode=" + machineCodeBits + ", serialNumber=" + serialNumberBits + ", epoch=" + epoch + '}';
+    }
+
+    public static final class Builder {
+        private int timeStampBits = 41;
+        private int dataCenterBits = 5;
+        private int machineCodeBits = 5;
+        private int serialNumberBits = 12;
+        private long epoch = LocalDateTime.of(2019, 1, 1, 0, 0, 0)
+                .toInstant(ZoneOffset.of("+8"))
+                .toEpochMilli();
+
+        private Builder() {
+        }
+
+        public Builder timeStampBits(int timeStampBits) {
+            this.timeStampBits = timeStampBits;
+            return this;
+        }
+
+        public Builder dataCenterBits(int dataCenterBits) {
+            this.dataCenterBits = dataCenterBits;
+            return this;
+        }
+
+        /**
+         * 机器编码(worker)的位数
+         */
+        public Builder machineCodeBits(int machineCodeBits) {
+            this.machineCodeBits = machineCodeBits;
+            return this;
+        }
+
+        public Builder serialNumberBits(int serialNumberBits) {
+            this.serialNumberBits = serialNumberBits;
+            return this;
+        }
+
+        /**
+         * 时间戳的起始时间, 单位毫秒
+         */
+        public Builder epoch(long epoch) {
+            this.epoch = epoch;
+            return this;
+        }
+
+        public SnowFlakeLayout build() {
+            if (timeStampBits <= 0 || serialNumberBits <= 0) {
+                throw new IllegalArgumentException("时间戳和序列号的位数必须大于0");
+            }
+            if (dataCenterBits < 0 || machineCodeBits < 0) {
+                throw new IllegalArgumentException("数据中心和机器编码的位数不能小于0");
+            }
+            int totalBits = timeStampBits + dataCenterBits + machineCodeBits + serialNumberBits;
+            if (totalBits > Long.SIZE - 1) {
+                throw new IllegalArgumentException("所有字段的位数之和不能超过63,当前值为：" + totalBits);
+            }
+            if (epoch < 0) {
+                throw new IllegalArgumentException("纪元不能小于0,当前值为：" + epoch);
+            }
+            return new SnowFlakeLayout(this);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.sym.algorithm.example.snowflake;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.util.Objects;
+import java.util.function.LongSupplier;
 
 /**
  * Twitter的雪花算法，用于分布式系统中生成唯一性ID，理解这个算法前需要先去理解下Java的位运算（ << 、 &  、 | ），雪花算法思想是：
@@ -13,106 +13,160 @@ import java.time.ZoneOffset;
  * 固定为0，    41位表示时间戳    5位表示   5位表示      12位表示
  * 表示符号位                   数据中心   机器编码     序列号
  *
+ * 以上是默认的布局，各个字段的位数和时间戳的起始时间都可以通过{@link SnowFlakeLayout}调整
+ *
+ * 时钟的处理：
+ * 1.一毫秒内的序列号用完以后，按照{@link WaitStrategy}等待系统时间走到下一毫秒，默认让出CPU而不是忙等；
+ * 2.系统时间被后退（例如NTP校时）的幅度不超过容忍值时，不抛出异常，而是以回拨前最后一次读到的系统时间为起点，
+ * 用{@link System#nanoTime()}推算当前时间，相当于暂时借用未来的时间戳，直到系统时间重新追上来；超过容忍值才拒绝生成ID；
+ * 3.只有批量生成{@link #nextIDs(long[])}会在序列号用完后主动借用未来的毫秒数；{@link #nextID()}自己从不开始借用，
+ * 只是在批量生成已经把时间戳推到系统时间前面时沿用并继续借用，否则总是等待下一毫秒. 借用的时间戳最多超前系统时间
+ * maxLeadMillis毫秒，超过以后按照{@link WaitStrategy}等待系统时间追上来. 否则ID中的时间戳会越来越失真，
+ * 进程在借用的时间窗口内重启还会生成重复的ID
+ *
  * @author ym.shen
  * @date 2019/6/5 15:59
  */
-public class SymSnowFlake {
+public class SymSnowFlake implements IIdGenerator {
 
     /**
-     * 设置一个基本时间戳，当前时间戳-基本时间戳作为41位时间戳位
+     * ID的位布局
      */
-    private static long baseTimeStamp = LocalDateTime.of(2019, 1, 1, 0, 0, 0)
-            .toInstant(ZoneOffset.of("+8"))
-            .toEpochMilli();
+    private final SnowFlakeLayout layout;
     /**
-     * 数据中心的位数
+     * 序列号允许的最大值，默认布局下为4095
+     */
+    private final long maxSerialNumber;
+    /*
+     * 数据中心和机器编码对于同一个生成器是固定的，构造时就左移到它们在64位结果中的正确位置上并拼接好，
+     * 生成ID时只需要和时间戳、序列号做或运算
      */
-    private final static long DATA_CENTER_BIT = 5;
     /**
-     * 机器编码的位数
+     * 数据中心和机器编码在ID中对应的位
      */
-    private final static long MACHINE_CODE_BIT = 5;
+    private final long workerBits;
     /**
-     * 序列号的位数 serialNumBits
+     * 序列号
      */
-    private final static long SERIAL_NUMBER_BIT = 12;
-
+    private long serialNum;
     /**
-     * 数据中心允许的最大值：31（5位二进制最多只能表示32个数，从0开始计数，总共为0-31）
+     * 表示上一次获取全局ID时的时间戳
      */
-    private final static long MAX_DATA_CENTER = ~(-1 << 5);
+    private long lastTimeStamp;
     /**
-     * 机器编码允许的最大值：31
+     * 表示上一次读取到的系统时间，用来判断时钟是否回拨
      */
-    private final static long MAX_MACHINE_CODE = ~(-1 << 5);
+    private long lastClock;
     /**
-     * 序列号允许的最大值：4095
+     * 读取lastClock时对应的{@link System#nanoTime()}，时钟回拨期间以它为起点推算当前时间
      */
-    private final static long MAX_SERIAL_NUMBER = ~(-1 << 12);
+    private long lastClockNanos;
 
-    /*
-     * 这里需要好好理解下，是一个关键。由前面的介绍知道，机器编码位于序列号的前面，序列号规定为12位，
-     * 机器编码本身定义为long类型，它也是64位，但我们逻辑上只允许它只有5位，也就是说它实际上有用的就只有这5位
-     * 所以在最后组装64位结果时，我们要把这5位左移12位，到达它组装64位结果的正确位置上
+    /**
+     * 默认容忍的时钟回拨毫秒数
+     */
+    private final static long DEFAULT_MAX_BACKWARD_MILLIS = 5;
+    /**
+     * 默认允许借用的时间戳超前系统时间的毫秒数
      */
+    private final static long DEFAULT_MAX_LEAD_MILLIS = 100;
     /**
-     * 机器编码需要左移的位数（12位）
+     * 序列号用完时的等待策略
      */
-    private static long machineCodeLeftMove = SERIAL_NUMBER_BIT;
+    private final WaitStrategy waitStrategy;
     /**
-     * 数据中心需要左移的位数（17位）
+     * 容忍的时钟回拨毫秒数
      */
-    private static long dataCenterLeftMove = machineCodeLeftMove + MACHINE_CODE_BIT;
+    private final long maxBackwardMillis;
     /**
-     * 时间戳需要左移的位数（22位）
+     * 允许借用的时间戳超前系统时间的毫秒数
      */
-    private static long timeStampLeftMove = dataCenterLeftMove + DATA_CENTER_BIT;
+    private final long maxLeadMillis;
+    /**
+     * 系统时钟
+     */
+    private final LongSupplier clock;
 
     /**
-     * 数据中心
+     * 构造方法需要指定 数据中心和机器编码的值，这两个值合起来必须唯一
      */
-    private long dataCenter;
+    public SymSnowFlake(long dataCenterId, long machineCode) {
+        this(SnowFlakeLayout.DEFAULT, dataCenterId, machineCode);
+    }
+
     /**
-     * 机器编码
+     * 使用指定的位布局
+     *
+     * @param layout ID的位布局
      */
-    private long machineCode;
+    public SymSnowFlake(SnowFlakeLayout layout, long dataCenterId, long machineCode) {
+        this(layout, dataCenterId, machineCode, WaitStrategy.YIELD, DEFAULT_MAX_BACKWARD_MILLIS,
+                System::currentTimeMillis);
+    }
+
     /**
-     * 序列号
+     * 使用默认的位布局，指定等待策略和时钟回拨的容忍值
+     *
+     * @param waitStrategy      序列号用完时的等待策略
+     * @param maxBackwardMillis 容忍的时钟回拨毫秒数，0表示不容忍任何回拨
+     * @param clock             系统时钟，返回毫秒数
      */
-    private long serialNum;
+    public SymSnowFlake(long dataCenterId, long machineCode, WaitStrategy waitStrategy, long maxBackwardMillis,
+                        LongSupplier clock) {
+        this(SnowFlakeLayout.DEFAULT, dataCenterId, machineCode, waitStrategy, maxBackwardMillis, clock);
+    }
+
     /**
-     * 表示上一次获取全局ID时的时间戳
+     * 指定位布局、等待策略和时钟回拨的容忍值
+     *
+     * @param layout            ID的位布局
+     * @param waitStrategy      序列号用完时的等待策略
+     * @param maxBackwardMillis 容忍的时钟回拨毫秒数，0表示不容忍任何回拨
+     * @param clock             系统时钟，返回毫秒数
      */
-    private long lastTimeStamp;
+    public SymSnowFlake(SnowFlakeLayout layout, long dataCenterId, long machineCode, WaitStrategy waitStrategy,
+                        long maxBackwardMillis, LongSupplier clock) {
+        this(layout, dataCenterId, machineCode, waitStrategy, maxBackwardMillis, DEFAULT_MAX_LEAD_MILLIS, clock);
+    }
 
     /**
-     * 构造方法需要指定 数据中心和机器编码的值，这两个值合起来必须唯一
+     * 指定位布局、等待策略、时钟回拨的容忍值以及借用时间戳的上限
+     *
+     * @param layout            ID的位布局
+     * @param waitStrategy      序列号用完时的等待策略
+     * @param maxBackwardMillis 容忍的时钟回拨毫秒数，0表示不容忍任何回拨
+     * @param maxLeadMillis     借用的时间戳最多超前系统时间多少毫秒，0表示不借用，序列号用完时总是等待下一毫秒
+     * @param clock             系统时钟，返回毫秒数
      */
-    public SymSnowFlake(long dataCenterId, long machineCode) {
-        if (dataCenterId > MAX_DATA_CENTER || MAX_DATA_CENTER < 0) {
-            throw new IllegalArgumentException("数据中心ID只允许在[0,31]之间,当前值为：" + dataCenterId);
-        }
-        if (machineCode > MAX_MACHINE_CODE || machineCode < 0) {
-            throw new IllegalArgumentException("机器编码只允许在[0,31]之间,当前值为：" + machineCode);
-        }
-        this.dataCenter = dataCenterId;
-        this.machineCode = machineCode;
+    public SymSnowFlake(SnowFlakeLayout layout, long dataCenterId, long machineCode, WaitStrategy waitStrategy,
+                        long maxBackwardMillis, long maxLeadMillis, LongSupplier clock) {
+        this.layout = Objects.requireNonNull(layout, "位布局不能为空");
+        this.maxSerialNumber = layout.getMaxSerialNumber();
+        this.workerBits = layout.composeWorker(dataCenterId, machineCode);
         this.lastTimeStamp = 0L;
         this.serialNum = 0L;
+        if (maxBackwardMillis < 0) {
+            throw new IllegalArgumentException("容忍的时钟回拨毫秒数不能小于0,当前值为：" + maxBackwardMillis);
+        }
+        if (maxLeadMillis < 0) {
+            throw new IllegalArgumentException("借用时间戳的上限不能小于0,当前值为：" + maxLeadMillis);
+        }
+        this.waitStrategy = Objects.requireNonNull(waitStrategy, "等待策略不能为空");
+        this.maxLeadMillis = maxLeadMillis;
+        this.maxBackwardMillis = maxBackwardMillis;
+        this.clock = Objects.requireNonNull(clock, "时钟不能为空");
     }
 
     /**
      * 获取分布式唯一性ID
      */
+    @Override
     public synchronized long nextID() {
         // 当前时间戳
-        long nowTimeStamp = System.currentTimeMillis();
-        if (nowTimeStamp < lastTimeStamp) {
-            throw new RuntimeException("系统时间被后退,拒绝生成id");
-        }
-        // 如果当前时间戳与上一次时间戳一样，说明在同一毫秒内，只需要把序列号加1即可
-        if (nowTimeStamp == lastTimeStamp) {
-            serialNum = serialNum + 1 & MAX_SERIAL_NUMBER;
+        long nowTimeStamp = readClock();
+        // 如果当前时间戳不大于上一次时间戳，说明在同一毫秒内(或者上一次的时间戳是批量生成时借用的)，只需要把序列号加1即可
+        if (nowTimeStamp <= lastTimeStamp) {
+            serialNum = serialNum + 1 & maxSerialNumber;
             /*
              * 如果一个毫秒内，序列号已经达到最大,这边解释一下为啥可以这样来判断serialNum等于0时就已经达到最大值
              *
@@ -120,26 +174,129 @@ public class SymSnowFlake {
              * 当它加1后就会变成0...1 0000 0000 0000（与运算进1），这样进行与运算后就会变为0
              */
             if (serialNum == 0L) {
-                // 更换到下一个毫秒数
-                nowTimeStamp = nextTimeStamp();
+                // 借用的时间戳已经超前于系统时间，在上限以内继续借用下一毫秒；否则等待系统时间更换到下一个毫秒数
+                nowTimeStamp = lastTimeStamp > nowTimeStamp ? borrow(lastTimeStamp + 1, nowTimeStamp) : nextTimeStamp();
+            } else {
+                nowTimeStamp = lastTimeStamp;
             }
         } else {
             /*
-             * 如果当前时间戳与上一次时间戳不一样，说明不再同一毫秒内，序列号值为0；
+             * 如果当前时间戳比上一次时间戳大，说明不再同一毫秒内，序列号值为0；
              */
             serialNum = 0L;
         }
         lastTimeStamp = nowTimeStamp;
-        return (nowTimeStamp - baseTimeStamp) << timeStampLeftMove |
-                dataCenter << dataCenterLeftMove |
-                machineCode << machineCodeLeftMove |
-                serialNum;
+        return compose(nowTimeStamp, serialNum);
+    }
+
+    /**
+     * 批量获取分布式唯一性ID
+     *
+     * @param n ID的个数
+     * @return 递增的ID
+     * @see #nextIDs(long[])
+     */
+    public long[] nextIDs(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("ID的个数不能小于0,当前值为：" + n);
+        }
+        return nextIDs(new long[n]);
+    }
+
+    /**
+     * 批量获取分布式唯一性ID, 填满整个数组. 只加锁和读取时钟一次, 一次性预留一段连续的序列号.
+     * 当前毫秒的序列号用完时，不等待系统时间，而是直接借用后面的毫秒数继续分配，超前系统时间超过maxLeadMillis时才等待，
+     * 借用的毫秒数会被记录下来，之后的{@link #nextID()}在系统时间追上来之前都会沿用它，保证ID依旧递增
+     *
+     * @param dst 存放ID的数组
+     * @return dst
+     */
+    @Override
+    public synchronized long[] nextIDs(long[] dst) {
+        if (dst.length == 0) {
+            return dst;
+        }
+        long nowTimeStamp = readClock();
+        long timeStamp;
+        long serial;
+        if (nowTimeStamp <= lastTimeStamp) {
+            timeStamp = lastTimeStamp;
+            serial = serialNum + 1;
+        } else {
+            timeStamp = nowTimeStamp;
+            serial = 0L;
+        }
+        int i = 0;
+        while (i < dst.length) {
+            if (serial > maxSerialNumber) {
+                // 当前毫秒的序列号用完了，借用下一毫秒，超前太多时先等待系统时间追上来
+                timeStamp = borrow(timeStamp + 1, nowTimeStamp);
+                // borrow返回时系统时间至少已经走到timeStamp - maxLeadMillis，省得下次借用时拿旧值多等一轮
+                nowTimeStamp = Math.max(nowTimeStamp, timeStamp - maxLeadMillis);
+                serial = 0L;
+            }
+            long prefix = compose(timeStamp, 0L);
+            int count = (int) Math.min(dst.length - i, maxSerialNumber + 1 - serial);
+            for (int j = 0; j < count; j++) {
+                dst[i++] = prefix | serial++;
+            }
+        }
+        lastTimeStamp = timeStamp;
+        serialNum = serial - 1;
+        return dst;
+    }
+
+    /**
+     * 读取系统时间，并检查时钟是否回拨. 注意不能和lastTimeStamp比较，它可能是批量生成时借用的未来时间戳
+     */
+    private long readClock() {
+        long nowTimeStamp = clock.getAsLong();
+        if (nowTimeStamp >= lastClock) {
+            lastClock = nowTimeStamp;
+            lastClockNanos = System.nanoTime();
+            return nowTimeStamp;
+        }
+        long backward = lastClock - nowTimeStamp;
+        if (backward > maxBackwardMillis) {
+            throw new RuntimeException("系统时间被后退" + backward + "ms,超过了容忍值" + maxBackwardMillis + "ms,拒绝生成id");
+        }
+        // 回拨在容忍范围内，从回拨前最后一次读到的时间开始，用单调递增的nanoTime推算当前时间
+        return lastClock + (System.nanoTime() - lastClockNanos) / 1_000_000;
+    }
+
+    /**
+     * 获取ID的位布局，可以用来解析ID
+     *
+     * @return layout
+     */
+    public SnowFlakeLayout getLayout() {
+        return layout;
+    }
+
+    private long compose(long timeStamp, long serialNum) {
+        return layout.composeTimeStamp(timeStamp) | workerBits | serialNum;
+    }
+
+    /**
+     * 借用时间戳{@code timeStamp}. 它超前系统时间超过maxLeadMillis时，按照等待策略等待系统时间追上来
+     *
+     * @param timeStamp    要借用的时间戳
+     * @param nowTimeStamp 最近一次读到的系统时间
+     * @return 实际使用的时间戳，等待期间系统时间可能已经超过了要借用的时间戳，这时直接使用系统时间
+     */
+    private long borrow(long timeStamp, long nowTimeStamp) {
+        while (timeStamp - nowTimeStamp > maxLeadMillis) {
+            waitStrategy.idle();
+            nowTimeStamp = readClock();
+        }
+        return Math.max(timeStamp, nowTimeStamp);
     }
 
     private long nextTimeStamp() {
-        long l = System.currentTimeMillis();
+        long l = readClock();
         while (l <= lastTimeStamp) {
-            l = System.currentTimeMillis();
+            waitStrategy.idle();
+            l = readClock();
         }
         return l;
     }
@@ -0,0 +1,52 @@
+package com.sym.algorithm.example.snowflake;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 雪花算法的等待策略: 一毫秒内的序列号用完以后, 需要等待系统时间走到下一毫秒,
+ * 这里决定等待期间每次检查时钟之前如何让出CPU
+ *
+ * @author shenyanming
+ * Created on 2021/2/10 9:40
+ */
+public enum WaitStrategy {
+
+    /**
+     * 忙等, 不让出CPU, 时延最低, 但是等待期间会占满一个核
+     */
+    SPIN {
+        @Override
+        public void idle() {
+        }
+    },
+
+    /**
+     * 让出CPU给其它就绪的线程, 没有其它线程时会立即返回, 接近于忙等
+     */
+    YIELD {
+        @Override
+        public void idle() {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * 挂起当前线程一小段时间, 几乎不消耗CPU, 代价是醒来的时机受操作系统调度精度的影响
+     */
+    PARK {
+        @Override
+        public void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    /**
+     * 每次挂起的时间, 取1毫秒的十分之一, 让醒来时尽量靠近下一毫秒的开始
+     */
+    private static final long PARK_NANOS = 100_000;
+
+    /**
+     * 等待一次, 之后调用方会重新检查时钟
+     */
+    public abstract void idle();
+}
@@ -0,0 +1,392 @@
+package com.sym.algorithm.example.sort.impl;
+
+import com.sym.algorithm.example.sort.AbstractIntegerSort;
+import com.sym.util.ArrayUtil;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * 双轴快速排序(Yaroslavskiy), 以及基于 fork-join 的并行版本.
+ * <p>
+ * 普通的{@link QuickSort}每次只选一个锚点, 把区间分成两部分. 双轴快排选两个锚点 pivot1 <= pivot2,
+ * 一次遍历就把区间分成三部分: [< pivot1][pivot1 <= x <= pivot2][> pivot2], 递归树更矮,
+ * 遍历数组的总次数更少, 对缓存更友好:
+ * <p>
+ * 1.选锚点: 在区间上等距取5个采样点, 排好序后取第2个和第4个作为锚点. 区间较大时, 每个采样点先和它两侧的元素
+ * 取三数中值(类似 Tukey 的 ninther), 降低遇到有规律的数据时锚点选偏的概率;
+ * <p>
+ * 2.两个锚点相等时, 说明区间内有大量重复元素, 改用三路划分 [< pivot][= pivot][> pivot], 等于锚点的部分不再递归;
+ * 两个锚点不相等但中间部分过大时, 先把等于两个锚点的元素挪到中间部分的两端, 再递归剩下的部分;
+ * <p>
+ * 3.区间长度小于{@link #INSERTION_SORT_THRESHOLD}时改用插入排序, 小数组上插入排序的常数更小;
+ * <p>
+ * 4.并行模式: 区间长度不小于{@link #PARALLEL_THRESHOLD}时, 划分完成后把三个子区间作为三个子任务
+ * 交给{@link ForkJoinPool}, 空闲的线程会窃取这些子任务, 小区间则退化为串行排序.
+ * <p>
+ * 为了性能以及并行模式下的线程安全, 这里直接操作数组, 不统计比较次数和交换次数: {@link #toString()}中这两项始终为0,
+ * 按{@link AbstractIntegerSort#comparator}和其它排序算法放在一起比较时, 结果没有参考意义, 只能单独看耗时.
+ *
+ * @author shenyanming
+ * Created on 2021/2/22 10:30
+ */
+public class DualPivotQuickSort extends AbstractIntegerSort {
+
+    /**
+     * 区间长度小于这个值时使用插入排序
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    /**
+     * 区间长度不小于这个值时, 采样点取三数中值
+     */
+    private static final int NINTHER_THRESHOLD = 1 << 10;
+
+    /**
+     * 并行模式下, 区间长度不小于这个值时拆分成子任务
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    public static void main(String[] args) {
+        int[] array = ArrayUtil.getRandomArray(50);
+        ArrayUtil.print(array);
+        parallelSort(array);
+        ArrayUtil.print(array);
+        benchmark(5_000_000);
+    }
+
+    /**
+     * 和{@link Arrays#sort(int[])}、{@link Arrays#parallelSort(int[])}比较排序耗时, 每种排序跑3轮, 第1轮用于预热
+     *
+     * @param length 数组长度
+     */
+    private static void benchmark(int length) {
+        int[] source = new Random(25).ints(length).toArray();
+        Map<String, Consumer<int[]>> sorts = new LinkedHashMap<>();
+        sorts.put("DualPivotQuickSort.sort", DualPivotQuickSort::sort);
+        sorts.put("DualPivotQuickSort.parallelSort", DualPivotQuickSort::parallelSort);
+        sorts.put("Arrays.sort", Arrays::sort);
+        sorts.put("Arrays.parallelSort", Arrays::parallelSort);
+        for (int round = 0; round < 3; round++) {
+            for (Map.Entry<String, Consumer<int[]>> entry : sorts.entrySet()) {
+                int[] copy = Arrays.copyOf(source, length);
+                long start = System.nanoTime();
+                entry.getValue().accept(copy);
+                long cost = System.nanoTime() - start;
+                System.out.printf("%s: %d个元素, 耗时%dms%n", entry.getKey(), length, cost / 1_000_000);
+            }
+        }
+    }
+
+    private final boolean parallel;
+
+    public DualPivotQuickSort(int[] array) {
+        this(array, false);
+    }
+
+    /**
+     * @param array    待排序数组
+     * @param parallel 是否使用并行模式
+     */
+    public DualPivotQuickSort(int[] array, boolean parallel) {
+        super(array, parallel ? "并行双轴快速排序" : "双轴快速排序");
+        this.parallel = parallel;
+    }
+
+    @Override
+    protected void internalSort(int[] array) {
+        if (parallel) {
+            parallelSort(array);
+        } else {
+            sort(array);
+        }
+    }
+
+    /**
+     * 串行排序
+     *
+     * @param array 待排序数组
+     */
+    public static void sort(int[] array) {
+        Objects.requireNonNull(array);
+        sort(array, 0, array.length - 1, new int[4]);
+    }
+
+    /**
+     * 使用{@link ForkJoinPool#commonPool()}并行排序
+     *
+     * @param array 待排序数组
+     */
+    public static void parallelSort(int[] array) {
+        parallelSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 使用指定的线程池并行排序, 数组较小或者线程池只有一个线程时退化为串行排序
+     *
+     * @param array 待排序数组
+     * @param pool  线程池
+     */
+    public static void parallelSort(int[] array, ForkJoinPool pool) {
+        Objects.requireNonNull(array);
+        Objects.requireNonNull(pool);
+        if (array.length < PARALLEL_THRESHOLD || pool.getParallelism() <= 1) {
+            sort(array, 0, array.length - 1, new int[4]);
+            return;
+        }
+        pool.invoke(new SortTask(array, 0, array.length - 1));
+    }
+
+    /**
+     * 串行排序闭区间[left, right]. 划分的结果写到{@code bounds}里, 读出来以后才会递归,
+     * 所以整个递归过程可以共用同一个数组
+     */
+    private static void sort(int[] a, int left, int right, int[] bounds) {
+        if (right - left < INSERTION_SORT_THRESHOLD) {
+            insertionSort(a, left, right);
+            return;
+        }
+        partition(a, left, right, bounds);
+        int leftEnd = bounds[0];
+        int middleStart = bounds[1];
+        int middleEnd = bounds[2];
+        int rightStart = bounds[3];
+        sort(a, left, leftEnd, bounds);
+        sort(a, middleStart, middleEnd, bounds);
+        sort(a, rightStart, right, bounds);
+    }
+
+    private static void insertionSort(int[] a, int left, int right) {
+        for (int i = left + 1; i <= right; i++) {
+            int current = a[i];
+            int j = i - 1;
+            // 比current大的元素依次右移一位, 比交换的写操作少一半
+            while (j >= left && a[j] > current) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = current;
+        }
+    }
+
+    /**
+     * 划分闭区间[left, right], 区间长度至少为{@link #INSERTION_SORT_THRESHOLD}.
+     * 结束后三个待排序的子区间为: [left, bounds[0]], [bounds[1], bounds[2]], [bounds[3], right],
+     * 子区间的左端点大于右端点时表示空区间
+     */
+    private static void partition(int[] a, int left, int right, int[] bounds) {
+        int length = right - left + 1;
+        // 以中点为中心, 间隔约为区间长度的1/7, 取5个采样点
+        int seventh = (length >> 3) + (length >> 6) + 1;
+        int e3 = (left + right) >>> 1;
+        int e2 = e3 - seventh;
+        int e1 = e2 - seventh;
+        int e4 = e3 + seventh;
+        int e5 = e4 + seventh;
+        if (length >= NINTHER_THRESHOLD) {
+            // e1 - left 和 right - e5 都约为区间长度的3/14, 所以两侧的元素不会越界
+            int step = seventh >> 1;
+            medianOfThree(a, e1 - step, e1, e1 + step);
+            medianOfThree(a, e2 - step, e2, e2 + step);
+            medianOfThree(a, e3 - step, e3, e3 + step);
+            medianOfThree(a, e4 - step, e4, e4 + step);
+            medianOfThree(a, e5 - step, e5, e5 + step);
+        }
+        sortFive(a, e1, e2, e3, e4, e5);
+
+        if (a[e2] == a[e4]) {
+            threeWayPartition(a, left, right, a[e3], bounds);
+            return;
+        }
+
+        int pivot1 = a[e2];
+        int pivot2 = a[e4];
+        // 两个锚点先挪到区间两端, 划分结束后再放回它们的最终位置
+        a[e2] = a[left];
+        a[e4] = a[right];
+        int less = left + 1;
+        int great = right - 1;
+        while (a[less] < pivot1) {
+            less++;
+        }
+        while (a[great] > pivot2) {
+            great--;
+        }
+        // [left + 1, less) < pivot1, [less, k) 介于两者之间, (great, right - 1] > pivot2
+        outer:
+        for (int k = less; k <= great; k++) {
+            int ak = a[k];
+            if (ak < pivot1) {
+                a[k] = a[less];
+                a[less] = ak;
+                less++;
+            } else if (ak > pivot2) {
+                while (a[great] > pivot2) {
+                    if (great-- == k) {
+                        break outer;
+                    }
+                }
+                if (a[great] < pivot1) {
+                    a[k] = a[less];
+                    a[less] = a[great];
+                    less++;
+                } else {
+                    a[k] = a[great];
+                }
+                a[great] = ak;
+                great--;
+            }
+        }
+        a[left] = a[less - 1];
+        a[less - 1] = pivot1;
+        a[right] = a[great + 1];
+        a[great + 1] = pivot2;
+        bounds[0] = less - 2;
+        bounds[3] = great + 2;
+
+        if (less < e1 && e5 < great) {
+            // 中间部分超过了区间的4/7, 通常是因为有大量等于锚点的元素, 把它们挪到中间部分的两端, 不再参与递归
+            while (a[less] == pivot1) {
+                less++;
+            }
+            while (a[great] == pivot2) {
+                great--;
+            }
+            outer:
+            for (int k = less; k <= great; k++) {
+                int ak = a[k];
+                if (ak == pivot1) {
+                    a[k] = a[less];
+                    a[less] = ak;
+                    less++;
+                } else if (ak == pivot2) {
+                    while (a[great] == pivot2) {
+                        if (great-- == k) {
+                            break outer;
+                        }
+                    }
+                    if (a[great] == pivot1) {
+                        a[k] = a[less];
+                        a[less] = pivot1;
+                        less++;
+                    } else {
+                        a[k] = a[great];
+                    }
+                    a[great] = ak;
+                    great--;
+                }
+            }
+        }
+        bounds[1] = less;
+        bounds[2] = great;
+    }
+
+    /**
+     * 三路划分: [left, less) < pivot, [less, great] = pivot, (great, right] > pivot, 中间部分不需要再排序
+     */
+    private static void threeWayPartition(int[] a, int left, int right, int pivot, int[] bounds) {
+        int less = left;
+        int great = right;
+        outer:
+        for (int k = less; k <= great; k++) {
+            int ak = a[k];
+            if (ak == pivot) {
+                continue;
+            }
+            if (ak < pivot) {
+                a[k] = a[less];
+                a[less] = ak;
+                less++;
+            } else {
+                // [k, great]全部大于锚点时, 划分已经完成
+                while (a[great] > pivot) {
+                    if (great-- == k) {
+                        break outer;
+                    }
+                }
+                if (a[great] < pivot) {
+                    a[k] = a[less];
+                    a[less] = a[great];
+                    less++;
+                } else {
+                    a[k] = pivot;
+                }
+                a[great] = ak;
+                great--;
+            }
+        }
+        bounds[0] = less - 1;
+        bounds[1] = 1;
+        bounds[2] = 0;
+        bounds[3] = great + 1;
+    }
+
+    /**
+     * 把三个位置的中值放到中间的位置上
+     */
+    private static void medianOfThree(int[] a, int i, int j, int k) {
+        if (a[i] > a[j]) {
+            swap(a, i, j);
+        }
+        if (a[j] > a[k]) {
+            swap(a, j, k);
+            if (a[i] > a[j]) {
+                swap(a, i, j);
+            }
+        }
+    }
+
+    /**
+     * 对5个采样点做插入排序
+     */
+    private static void sortFive(int[] a, int e1, int e2, int e3, int e4, int e5) {
+        int[] indexes = {e1, e2, e3, e4, e5};
+        for (int i = 1; i < indexes.length; i++) {
+            for (int j = i; j > 0 && a[indexes[j - 1]] > a[indexes[j]]; j--) {
+                swap(a, indexes[j - 1], indexes[j]);
+            }
+        }
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+    /**
+     * 并行排序的子任务, 负责闭区间[left, right]
+     */
+    private static class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a;
+        private final int left;
+        private final int right;
+
+        SortTask(int[] a, int left, int right) {
+            this.a = a;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        protected void compute() {
+            int[] bounds = new int[4];
+            if (right - left < PARALLEL_THRESHOLD) {
+                sort(a, left, right, bounds);
+                return;
+            }
+            partition(a, left, right, bounds);
+            invokeAll(new SortTask(a, left, bounds[0]),
+                    new SortTask(a, bounds[1], bounds[2]),
+                    new SortTask(a, bounds[3], right));
+        }
+    }
+}
@@ -1,10 +1,20 @@
 package com.sym.structure.bloomfilter;
 
+import com.sym.structure.bloomfilter.hash.Hasher;
+import com.sym.structure.bloomfilter.hash.Hashers;
+import com.sym.structure.bloomfilter.hash.Murmur3;
+
 import java.util.Collection;
 import java.util.Objects;
+import java.util.function.IntToLongFunction;
 
 /**
- * 抽象的布隆过滤器实现
+ * 抽象的布隆过滤器实现.
+ * <p>
+ * 元素通过{@link Hasher}映射成一个64位哈希值, 拆成高低两个32位 hash1 和 hash2,
+ * 再用 hash1 + i * hash2 模拟出k个哈希函数(Kirsch-Mitzenmacher优化). 这要求64位哈希值的每一位都足够随机,
+ * 默认使用MurmurHash3, 不能直接使用{@link Object#hashCode()}: 例如Integer的哈希码就是它本身,
+ * 连续的整数得到的探测位置高度相关, 实际的误判率会远高于配置的误判率.
  *
  * @author shenyanming
  * Created on 2021/1/16 9:39.
@@ -12,6 +22,11 @@ import java.util.Objects;
 
 public abstract class AbstractBloomFilter<T> implements IBloomFilter<T> {
 
+    /**
+     * 批量查询时每一批的元素个数
+     */
+    private static final int BATCH_SIZE = 64;
+
     /**
      * 总的二进制位
      */
@@ -32,6 +47,16 @@ public abstract class AbstractBloomFilter<T> implements IBloomFilter<T> {
      */
     protected double misjudgmentRate;
 
+    /**
+     * 哈希函数
+     */
+    protected final Hasher<? super T> hasher;
+
+    /**
+     * 哈希种子
+     */
+    protected final int seed;
+
     /**
      * 构造布隆过滤器
      *
@@ -39,23 +64,51 @@ public abstract class AbstractBloomFilter<T> implements IBloomFilter<T> {
      * @param misjudgmentRate 允许的误判率, (0, 1)
      */
     protected AbstractBloomFilter(int dataCount, double misjudgmentRate) {
+        this(dataCount, misjudgmentRate, Hashers.murmur3());
+    }
+
+    /**
+     * 构造布隆过滤器, 并指定哈希函数
+     *
+     * @param dataCount       数据规模
+     * @param misjudgmentRate 允许的误判率, (0, 1)
+     * @param hasher          哈希函数
+     */
+    protected AbstractBloomFilter(int dataCount, double misjudgmentRate, Hasher<? super T> hasher) {
         initialize(dataCount, misjudgmentRate);
         this.dataCount = dataCount;
         this.misjudgmentRate = misjudgmentRate;
+        this.hasher = Objects.requireNonNull(hasher, "hasher is null");
+        this.seed = 0;
+    }
+
+    /**
+     * 根据已经计算好的参数构造布隆过滤器, 用于从文件中恢复
+     *
+     * @param dataCount       数据规模
+     * @param misjudgmentRate 误判率
+     * @param bitCount        二进制位数量
+     * @param hashCount       哈希函数数量
+     * @param hasher          哈希函数
+     * @param seed            哈希种子
+     */
+    protected AbstractBloomFilter(int dataCount, double misjudgmentRate, int bitCount, int hashCount,
+                                  Hasher<? super T> hasher, int seed) {
+        if (bitCount <= 0 || hashCount <= 0) {
+            throw new IllegalArgumentException("bitCount and hashCount must be positive");
+        }
+        this.dataCount = dataCount;
+        this.misjudgmentRate = misjudgmentRate;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.hasher = Objects.requireNonNull(hasher, "hasher is null");
+        this.seed = seed;
     }
 
     @Override
     public void put(T t) {
         Objects.requireNonNull(t, "element is null");
-        // 根据参数生成2个hash值
-        int hash1 = t.hashCode();
-        int hash2 = hash1 >>> 16;
-        for (int i = 0; i < hashCount; i++) {
-            // 根据哈希函数计算二进制位 位置
-            int index = computeIndex(hash1, hash2, i);
-            // 设置位
-            setBit(index);
-        }
+        putHash(hash(t));
     }
 
     @Override
@@ -66,22 +119,98 @@ public abstract class AbstractBloomFilter<T> implements IBloomFilter<T> {
 
     @Override
     public boolean contains(T t) {
-        // 根据参数生成2个hash值
-        int hash1 = t.hashCode();
-        int hash2 = hash1 >>> 16;
-        // 要验证的哈希函数
-        for (int i = 0; i < hashCount; i++) {
-            // 计算二进制位下标
-            int index = computeIndex(hash1, hash2, i);
-            // 只要有一个位不存在, 那就说明这个元素一定不存在
-            if (!existBit(index)) {
-                return false;
-            }
+        Objects.requireNonNull(t, "element is null");
+        return containsHash(hash(t));
+    }
+
+    /**
+     * 批量添加long类型的元素, 不需要装箱. 结果和逐个调用{@code put(Long)}相同
+     *
+     * @param keys 元素
+     */
+    public void putAll(long[] keys) {
+        Objects.requireNonNull(keys, "keys is null");
+        for (long key : keys) {
+            putHash(hashLong(key));
         }
-        // 可能存在, 会有一定的误判率
-        return true;
     }
 
+    /**
+     * 批量添加int类型的元素, 不需要装箱. 结果和逐个调用{@code put(Integer)}相同
+     *
+     * @param keys 元素
+     */
+    public void putAll(int[] keys) {
+        Objects.requireNonNull(keys, "keys is null");
+        for (int key : keys) {
+            putHash(hashInt(key));
+        }
+    }
+
+    /**
+     * 批量添加字节数组类型的元素. 结果和逐个调用{@code put(byte[])}相同
+     *
+     * @param keys 元素
+     */
+    public void putAll(byte[][] keys) {
+        Objects.requireNonNull(keys, "keys is null");
+        for (byte[] key : keys) {
+            putHash(hashBytes(Objects.requireNonNull(key, "element is null")));
+        }
+    }
+
+    /**
+     * 批量判断long类型的元素是否存在
+     *
+     * @param keys 元素
+     * @return 和keys一一对应, true-可能存在, false-一定不存在
+     */
+    public boolean[] containsAll(long[] keys) {
+        Objects.requireNonNull(keys, "keys is null");
+        return containsAll(keys.length, i -> hashLong(keys[i]));
+    }
+
+    /**
+     * 批量判断int类型的元素是否存在
+     *
+     * @param keys 元素
+     * @return 和keys一一对应, true-可能存在, false-一定不存在
+     */
+    public boolean[] containsAll(int[] keys) {
+        Objects.requireNonNull(keys, "keys is null");
+        return containsAll(keys.length, i -> hashInt(keys[i]));
+    }
+
+    /**
+     * 批量判断字节数组类型的元素是否存在
+     *
+     * @param keys 元素
+     * @return 和keys一一对应, true-可能存在, false-一定不存在
+     */
+    public boolean[] containsAll(byte[][] keys) {
+        Objects.requireNonNull(keys, "keys is null");
+        return containsAll(keys.length, i -> hashBytes(Objects.requireNonNull(keys[i], "element is null")));
+    }
+
+    public int getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public int getDataCount() {
+        return dataCount;
+    }
+
+    public double getMisjudgmentRate() {
+        return misjudgmentRate;
+    }
+
+    public int getSeed() {
+        return seed;
+    }
 
     /**
      * 计算二进制位数量和哈希函数数量
@@ -96,8 +225,57 @@ public abstract class AbstractBloomFilter<T> implements IBloomFilter<T> {
         double ln2 = Math.log(2);
         // 计算所需的二进制位数量
         this.bitCount = (int) (- (dataCount * Math.log(misjudgmentRate)) / (ln2 * ln2));
-        // 计算所需的哈希函数数量
-        this.hashCount = (int) (bitCount * ln2 / dataCount);
+        // 计算所需的哈希函数数量, 四舍五入到最接近最优值的整数, 并且至少有1个
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount * ln2 / dataCount));
+    }
+
+    /**
+     * 计算元素的64位哈希值
+     *
+     * @param t 元素
+     * @return 哈希值
+     */
+    protected long hash(T t) {
+        return hasher.hash(t, seed);
+    }
+
+    /**
+     * 把64位哈希值对应的k个位置都置为1
+     *
+     * @param hash 哈希值
+     */
+    protected void putHash(long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            setBit(probeIndex(hash, i));
+        }
+    }
+
+    /**
+     * 判断64位哈希值对应的k个位置是否都为1
+     *
+     * @param hash 哈希值
+     * @return true-可能存在, false-一定不存在
+     */
+    protected boolean containsHash(long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            // 只要有一个位不存在, 那就说明这个元素一定不存在
+            if (!existBit(probeIndex(hash, i))) {
+                return false;
+            }
+        }
+        // 可能存在, 会有一定的误判率
+        return true;
+    }
+
+    /**
+     * 计算第i个哈希函数的探测位置, 子类可以重写它来改变位的分布方式
+     *
+     * @param hash 元素的64位哈希值
+     * @param i    第几个哈希函数
+     * @return index
+     */
+    protected int probeIndex(long hash, int i) {
+        return computeIndex((int) hash, (int) (hash >>> 32), i);
     }
 
     /**
@@ -108,7 +286,7 @@ public abstract class AbstractBloomFilter<T> implements IBloomFilter<T> {
      * @param salt  盐值
      * @return index
      */
-    private int computeIndex(int hash1, int hash2, int salt) {
+    protected int computeIndex(int hash1, int hash2, int salt) {
         // 计算hashCode
         int combinedHash = hash1 + (salt * hash2);
         if (combinedHash < 0) {
@@ -118,6 +296,70 @@ public abstract class AbstractBloomFilter<T> implements IBloomFilter<T> {
         return combinedHash % bitCount;
     }
 
+    /**
+     * 批量查询: 先把一批元素的哈希值都算出来, 再按"轮"探测, 第i轮检查这一批中所有还没有被排除的元素的第i个位置.
+     * <p>
+     * 逐个查询时, 一个元素的k次探测之间有依赖(前一个位为0就不再探测), 位数组远大于CPU缓存时,
+     * 每次探测几乎都是一次缓存未命中, CPU只能一个接一个地等内存. 按轮探测时同一轮中的各次访问互不依赖,
+     * CPU可以同时发出多个内存请求(乱序执行), 把访存延迟重叠起来; 被排除的元素会从待查列表中移除,
+     * 不会产生多余的访存.
+     */
+    private boolean[] containsAll(int length, IntToLongFunction hashFunction) {
+        boolean[] result = new boolean[length];
+        int batch = Math.min(BATCH_SIZE, length);
+        long[] hashes = new long[batch];
+        int[] pending = new int[batch];
+        for (int from = 0; from < length; from += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, length - from);
+            for (int j = 0; j < n; j++) {
+                hashes[j] = hashFunction.applyAsLong(from + j);
+                pending[j] = j;
+            }
+            for (int i = 0; i < hashCount && n > 0; i++) {
+                int survivors = 0;
+                for (int j = 0; j < n; j++) {
+                    int p = pending[j];
+                    if (existBit(probeIndex(hashes[p], i))) {
+                        pending[survivors++] = p;
+                    }
+                }
+                n = survivors;
+            }
+            for (int j = 0; j < n; j++) {
+                result[from + pending[j]] = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 基本类型的元素: 使用默认的哈希函数时直接计算, 和{@link Hashers#murmur3()}对装箱类型的计算结果一致;
+     * 使用自定义的哈希函数时只能装箱后交给它计算, 这时泛型T必须能接受对应的装箱类型
+     */
+    @SuppressWarnings("unchecked")
+    private long hashLong(long key) {
+        if (hasher == Hashers.murmur3()) {
+            return Murmur3.hashLong(key, seed);
+        }
+        return ((Hasher<Object>) hasher).hash(key, seed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private long hashInt(int key) {
+        if (hasher == Hashers.murmur3()) {
+            return Murmur3.hashInt(key, seed);
+        }
+        return ((Hasher<Object>) hasher).hash(key, seed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private long hashBytes(byte[] key) {
+        if (hasher == Hashers.murmur3()) {
+            return Murmur3.hash64(key, seed);
+        }
+        return ((Hasher<Object>) hasher).hash(key, seed);
+    }
+
     /**
      * 将指定位置{@code index}的二进制位置为1
      *
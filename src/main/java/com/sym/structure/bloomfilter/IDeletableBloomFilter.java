@@ -0,0 +1,21 @@
+package com.sym.structure.bloomfilter;
+
+/**
+ * 支持删除元素的布隆过滤器.
+ * 普通的布隆过滤器中一个二进制位可能被多个元素共用, 把它清零会影响其它元素, 所以只能添加不能删除;
+ * 支持删除的实现需要为每个位置记录更多的信息, 例如计数器, 占用的内存也会更多.
+ *
+ * @author shenyanming
+ * Created on 2021/2/19 9:50.
+ */
+public interface IDeletableBloomFilter<T> extends IBloomFilter<T> {
+
+    /**
+     * 从布隆过滤器中删除元素. 只能删除添加过的元素, 删除没有添加过的元素会让其它元素被误判为不存在,
+     * 所以实现类会先判断元素是否可能存在, 一定不存在的元素不会执行删除
+     *
+     * @param t 元素
+     * @return true-删除成功, false-元素一定不存在
+     */
+    boolean remove(T t);
+}
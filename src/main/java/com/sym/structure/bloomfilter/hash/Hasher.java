@@ -0,0 +1,22 @@
+package com.sym.structure.bloomfilter.hash;
+
+/**
+ * 布隆过滤器使用的哈希函数, 把元素映射成64位哈希值. 布隆过滤器会把它拆成高低两个32位,
+ * 通过 hash1 + i * hash2 模拟出k个哈希函数, 所以64位中的每一位都应该足够随机
+ *
+ * @author shenyanming
+ * Created on 2021/2/17 10:30.
+ * @see Hashers
+ */
+@FunctionalInterface
+public interface Hasher<T> {
+
+    /**
+     * 计算元素的哈希值
+     *
+     * @param element 元素, 不为null
+     * @param seed    种子, 同样的元素和种子必须得到同样的哈希值
+     * @return 64位哈希值
+     */
+    long hash(T element, int seed);
+}
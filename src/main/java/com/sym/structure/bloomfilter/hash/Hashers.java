@@ -0,0 +1,66 @@
+package com.sym.structure.bloomfilter.hash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 常用的{@link Hasher}
+ *
+ * @author shenyanming
+ * Created on 2021/2/17 10:40.
+ */
+public final class Hashers {
+
+    private Hashers() {
+    }
+
+    /**
+     * 默认的哈希函数, 根据元素的类型选择计算方式:
+     * 1.Integer、Long: 对数值的小端序字节求MurmurHash3, 和{@link Murmur3#hashInt(int, int)}、
+     * {@link Murmur3#hashLong(long, int)}一致, 方便按基本类型批量操作;
+     * 2.String: 对UTF-8编码的字节求MurmurHash3;
+     * 3.byte[]: 对数组内容求MurmurHash3;
+     * 4.其它对象: 对{@link Object#hashCode()}求MurmurHash3, 哈希码相同的元素仍然会冲突,
+     * 需要更好的效果时请通过{@link #bytes(Function)}把对象转换成字节数组.
+     *
+     * @return hasher
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Hasher<T> murmur3() {
+        return (Hasher<T>) DefaultHasher.INSTANCE;
+    }
+
+    /**
+     * 先把对象转换成字节数组, 再求MurmurHash3. 每次调用都返回新的实例, 即使转换函数相同也互不相等,
+     * 需要合并的布隆过滤器应该共用同一个返回值
+     *
+     * @param toBytes 转换函数
+     * @return hasher
+     */
+    public static <T> Hasher<T> bytes(Function<? super T, byte[]> toBytes) {
+        Objects.requireNonNull(toBytes, "toBytes is null");
+        return (element, seed) -> Murmur3.hash64(toBytes.apply(element), seed);
+    }
+
+    private enum DefaultHasher implements Hasher<Object> {
+        INSTANCE;
+
+        @Override
+        public long hash(Object element, int seed) {
+            if (element instanceof Integer) {
+                return Murmur3.hashInt((Integer) element, seed);
+            }
+            if (element instanceof Long) {
+                return Murmur3.hashLong((Long) element, seed);
+            }
+            if (element instanceof String) {
+                return Murmur3.hash64(((String) element).getBytes(StandardCharsets.UTF_8), seed);
+            }
+            if (element instanceof byte[]) {
+                return Murmur3.hash64((byte[]) element, seed);
+            }
+            return Murmur3.hashInt(element.hashCode(), seed);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.sym.structure.bloomfilter.hash;
+
+/**
+ * MurmurHash3(x64_128版本)的实现, 只返回128位结果中的前64位. 种子按照参考实现当作无符号数处理,
+ * 种子非负时和Guava的{@code Hashing.murmur3_128(seed).hashBytes(bytes).asLong()}结果一致.
+ * <p>
+ * 对于int和long提供了单独的方法, 结果等同于对它们的小端序字节求哈希, 但是不需要先转换成字节数组.
+ *
+ * @author shenyanming
+ * Created on 2021/2/17 10:00.
+ */
+public final class Murmur3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private Murmur3() {
+    }
+
+    /**
+     * 对字节数组求哈希
+     *
+     * @param data 字节数组
+     * @param seed 种子
+     * @return 64位哈希值
+     */
+    public static long hash64(byte[] data, int seed) {
+        return hash64(data, 0, data.length, seed);
+    }
+
+    /**
+     * 对字节数组的一部分求哈希
+     *
+     * @param data   字节数组
+     * @param offset 起始下标
+     * @param length 长度
+     * @param seed   种子
+     * @return 64位哈希值
+     */
+    public static long hash64(byte[] data, int offset, int length, int seed) {
+        long h1 = seed & 0xffffffffL;
+        long h2 = h1;
+        int blocks = length >>> 4;
+        for (int i = 0; i < blocks; i++) {
+            int index = offset + (i << 4);
+            long k1 = getLongLittleEndian(data, index);
+            long k2 = getLongLittleEndian(data, index + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        // 处理剩余不足16个字节的部分
+        int tail = offset + (blocks << 4);
+        int remaining = length & 15;
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = remaining - 1; i >= 8; i--) {
+            k2 = k2 << 8 | (data[tail + i] & 0xffL);
+        }
+        for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+            k1 = k1 << 8 | (data[tail + i] & 0xffL);
+        }
+        if (remaining > 8) {
+            h2 ^= mixK2(k2);
+        }
+        if (remaining > 0) {
+            h1 ^= mixK1(k1);
+        }
+        return finish(h1, h2, length);
+    }
+
+    /**
+     * 对long的8个小端序字节求哈希
+     */
+    public static long hashLong(long value, int seed) {
+        long h1 = seed & 0xffffffffL;
+        long h2 = h1;
+        h1 ^= mixK1(value);
+        return finish(h1, h2, 8);
+    }
+
+    /**
+     * 对int的4个小端序字节求哈希
+     */
+    public static long hashInt(int value, int seed) {
+        long h1 = seed & 0xffffffffL;
+        long h2 = h1;
+        h1 ^= mixK1(value & 0xffffffffL);
+        return finish(h1, h2, 4);
+    }
+
+    private static long finish(long h1, long h2, int length) {
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        return h1;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    /**
+     * 最终的混淆步骤, 让输入的每一位都能影响输出的每一位
+     */
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLongLittleEndian(byte[] data, int index) {
+        return (data[index] & 0xffL)
+                | (data[index + 1] & 0xffL) << 8
+                | (data[index + 2] & 0xffL) << 16
+                | (data[index + 3] & 0xffL) << 24
+                | (data[index + 4] & 0xffL) << 32
+                | (data[index + 5] & 0xffL) << 40
+                | (data[index + 6] & 0xffL) << 48
+                | (data[index + 7] & 0xffL) << 56;
+    }
+}
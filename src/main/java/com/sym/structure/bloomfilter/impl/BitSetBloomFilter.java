@@ -1,6 +1,8 @@
 package com.sym.structure.bloomfilter.impl;
 
 import com.sym.structure.bloomfilter.AbstractBloomFilter;
+import com.sym.structure.bloomfilter.hash.Hasher;
+import com.sym.structure.bloomfilter.hash.Hashers;
 
 import java.util.BitSet;
 
@@ -16,7 +18,11 @@ public class BitSetBloomFilter<T> extends AbstractBloomFilter<T> {
     private BitSet bitSet;
 
     public BitSetBloomFilter(int dataCount, double misjudgmentRate) {
-        super(dataCount, misjudgmentRate);
+        this(dataCount, misjudgmentRate, Hashers.murmur3());
+    }
+
+    public BitSetBloomFilter(int dataCount, double misjudgmentRate, Hasher<? super T> hasher) {
+        super(dataCount, misjudgmentRate, hasher);
         bitSet = new BitSet(bitCount);
     }
 
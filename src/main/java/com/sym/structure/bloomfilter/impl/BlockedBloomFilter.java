@@ -0,0 +1,118 @@
+package com.sym.structure.bloomfilter.impl;
+
+import com.sym.structure.bloomfilter.AbstractBloomFilter;
+import com.sym.structure.bloomfilter.hash.Hasher;
+import com.sym.structure.bloomfilter.hash.Hashers;
+
+/**
+ * 分块的布隆过滤器(blocked bloom filter).
+ * <p>
+ * 普通的布隆过滤器把一个元素的k个二进制位分散在整个位数组上, 位数组远大于CPU缓存时,
+ * 每次查询都要付出k次缓存未命中的代价. 分块布隆过滤器把位数组切分成若干个512位(64字节, 一个缓存行)的块,
+ * 先用哈希值的高32位选出一个块, 再用低32位把k个二进制位都放在这个块内, 一次查询最多只会访问一两个缓存行
+ * (long数组的起始地址不一定和缓存行对齐).
+ * <p>
+ * 代价是每个块内的负载不均匀: 元素落到各个块的个数近似服从泊松分布, 负载偏高的块误判率上升得比负载偏低的块下降得多,
+ * 同样的位数下整体误判率会高于普通的布隆过滤器. 所以构造时按分块后的误判率公式重新估算, 逐步增加块的数量,
+ * 直到误判率不超过配置的值, 位数一般会比普通的布隆过滤器多出几个百分点到十几个百分点.
+ *
+ * @author shenyanming
+ * Created on 2021/2/15 10:20.
+ */
+public class BlockedBloomFilter<T> extends AbstractBloomFilter<T> {
+
+    /**
+     * 每个块的二进制位数量, 即一个64字节的缓存行
+     */
+    private static final int BLOCK_BITS = 512;
+
+    /**
+     * 每个块包含的long个数
+     */
+    private static final int WORDS_PER_BLOCK = BLOCK_BITS / Long.SIZE;
+
+    /**
+     * 块的数量上限, 保证二进制位的下标不会超出int的范围
+     */
+    private static final long MAX_BLOCK_COUNT = Integer.MAX_VALUE / BLOCK_BITS;
+
+    private final long[] words;
+
+    /**
+     * 块的数量
+     */
+    private final int blockCount;
+
+    public BlockedBloomFilter(int dataCount, double misjudgmentRate) {
+        this(dataCount, misjudgmentRate, Hashers.murmur3());
+    }
+
+    public BlockedBloomFilter(int dataCount, double misjudgmentRate, Hasher<? super T> hasher) {
+        super(dataCount, misjudgmentRate, hasher);
+        // 先向上取整为块的整数倍, 再补偿分块带来的误判率上升
+        long blocks = ((long) bitCount + BLOCK_BITS - 1) / BLOCK_BITS;
+        while (blocks < MAX_BLOCK_COUNT && misjudgmentRate(dataCount, blocks, hashCount) > misjudgmentRate) {
+            blocks = Math.min(MAX_BLOCK_COUNT, blocks + Math.max(1, blocks >> 6));
+        }
+        this.blockCount = (int) blocks;
+        this.bitCount = blockCount * BLOCK_BITS;
+        this.words = new long[blockCount * WORDS_PER_BLOCK];
+    }
+
+    /**
+     * 分块布隆过滤器的误判率: 每个块的元素个数近似服从均值为 n / 块数 的泊松分布,
+     * 块内有i个元素时, 每次探测随机置位块内的一个位置, 误判率为 (1 - (1 - 1 / B)^(k * i))^k, 再按泊松分布加权求和
+     *
+     * @param dataCount  数据规模
+     * @param blockCount 块的数量
+     * @param hashCount  哈希函数数量
+     * @return 估算的误判率
+     */
+    private static double misjudgmentRate(int dataCount, long blockCount, int hashCount) {
+        double lambda = (double) dataCount / blockCount;
+        double unset = hashCount * Math.log1p(-1.0 / BLOCK_BITS);
+        // 泊松分布的概率在对数空间里递推, 块的平均负载很高时也不会下溢
+        double logProbability = -lambda;
+        double logLambda = Math.log(lambda);
+        long upper = (long) (lambda + 12 * Math.sqrt(lambda) + 20);
+        double rate = 0;
+        for (long i = 0; i <= upper; i++) {
+            if (i > 0) {
+                logProbability += logLambda - Math.log(i);
+            }
+            rate += Math.exp(logProbability) * Math.pow(-Math.expm1(i * unset), hashCount);
+        }
+        return rate;
+    }
+
+    @Override
+    protected int probeIndex(long hash, int i) {
+        // 块内的位置只需要9位, 如果用 hash1 + i * hash2 的双重哈希, 有效的组合只有512 * 256种,
+        // 块内元素较多时不同元素的k个位置整组相同的概率不可忽略. 这里每次探测都把低32位和探测序号重新混合,
+        // 用乘法结果的高9位作为块内位置, 每个位置都依赖全部32位
+        int h = ((int) hash ^ i * 0x9E3779B9) * 0x5BD1E995;
+        h ^= h >>> 15;
+        h *= 0x27D4EB2F;
+        return blockBase(hash) + (h >>> 23);
+    }
+
+    @Override
+    protected void setBit(int index) {
+        // 移位运算只会使用低6位, 所以 1L << index 等价于 1L << (index % 64)
+        words[index >>> 6] |= 1L << index;
+    }
+
+    @Override
+    protected boolean existBit(int index) {
+        return (words[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * 用哈希值的高32位选出块, 返回块的第一个二进制位的下标.
+     * 高32位乘以块的数量再右移32位, 可以把它均匀地映射到[0, blockCount)上, 比取模运算快
+     */
+    private int blockBase(long hash) {
+        int block = (int) (((hash >>> 32) * blockCount) >>> 32);
+        return block * BLOCK_BITS;
+    }
+}
@@ -0,0 +1,155 @@
+package com.sym.structure.bloomfilter.impl;
+
+import com.sym.structure.bloomfilter.hash.Hasher;
+import com.sym.structure.bloomfilter.hash.Hashers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 布隆过滤器的持久化: 离线构建好的{@link LongArrayBloomFilter}保存成文件分发到各个节点,
+ * 节点上以只读的方式映射文件, 不需要把几百MB的位数组读到堆上, 映射完成就可以使用.
+ * <p>
+ * 文件格式(大端序):
+ * <pre>
+ * [魔数(4字节)][版本号(4字节)][数据规模(4字节)][误判率(8字节)]
+ * [二进制位数量(4字节)][哈希函数数量(4字节)][哈希种子(4字节)][long个数(4字节)][填充(4字节)]
+ * [位数组(8字节 * long个数)]
+ * </pre>
+ * 文件头填充到40字节, 让位数组按8字节对齐. 哈希函数本身无法保存, 加载时必须使用和构建时相同的{@link Hasher}.
+ * <p>
+ * 保存时先写到同一目录下的临时文件并刷盘, 再原子地改名覆盖原来的文件, 保存到一半进程崩溃也不会破坏已有的文件.
+ *
+ * @author shenyanming
+ * Created on 2021/2/20 10:30.
+ */
+public class BloomFilterFiles {
+
+    /**
+     * 魔数, 即"SYMB"的ASCII码
+     */
+    private static final int MAGIC = 0x53594D42;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+
+    /**
+     * 写文件时的缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private BloomFilterFiles() {
+    }
+
+    /**
+     * 保存布隆过滤器, 已存在的文件会在保存成功后被原子地替换
+     *
+     * @param bloomFilter 布隆过滤器
+     * @param path        文件
+     */
+    public static void save(LongArrayBloomFilter<?> bloomFilter, Path path) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try {
+                write(bloomFilter, tmp);
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                // 保存成功时临时文件已经被改名了, 失败时把写了一半的临时文件删掉
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("保存布隆过滤器失败, path=" + path, e);
+        }
+    }
+
+    /**
+     * 把文件头和位数组写到指定的文件中并刷盘
+     */
+    private static void write(LongArrayBloomFilter<?> bloomFilter, Path path) throws IOException {
+        long[] words = bloomFilter.words();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(bloomFilter.getDataCount())
+                    .putDouble(bloomFilter.getMisjudgmentRate())
+                    .putInt(bloomFilter.getBitCount())
+                    .putInt(bloomFilter.getHashCount())
+                    .putInt(bloomFilter.getSeed())
+                    .putInt(words.length)
+                    .putInt(0);
+            for (long word : words) {
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(word);
+            }
+            flush(channel, buffer);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 以只读的方式映射布隆过滤器文件, 使用默认的哈希函数
+     *
+     * @param path 文件
+     * @return 只读的布隆过滤器
+     */
+    public static <T> MappedBloomFilter<T> map(Path path) {
+        return map(path, Hashers.murmur3());
+    }
+
+    /**
+     * 以只读的方式映射布隆过滤器文件
+     *
+     * @param path   文件
+     * @param hasher 哈希函数, 必须和构建时使用的相同
+     * @return 只读的布隆过滤器
+     */
+    public static <T> MappedBloomFilter<T> map(Path path, Hasher<? super T> hasher) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IllegalStateException("不是布隆过滤器文件, path=" + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalStateException("不是布隆过滤器文件, path=" + path);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("不支持的布隆过滤器文件版本: " + version);
+            }
+            int dataCount = buffer.getInt();
+            double misjudgmentRate = buffer.getDouble();
+            int bitCount = buffer.getInt();
+            int hashCount = buffer.getInt();
+            int seed = buffer.getInt();
+            int wordCount = buffer.getInt();
+            if (wordCount < bitCount / Long.SIZE + 1 || fileSize != HEADER_SIZE + (long) wordCount * Long.BYTES) {
+                throw new IllegalStateException("布隆过滤器文件不完整, path=" + path);
+            }
+            buffer.position(HEADER_SIZE);
+            // 映射在通道关闭以后依然有效
+            return new MappedBloomFilter<>(dataCount, misjudgmentRate, bitCount, hashCount, hasher, seed,
+                    buffer.slice());
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载布隆过滤器失败, path=" + path, e);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,51 @@
+package com.sym.structure.bloomfilter.impl;
+
+import com.sym.structure.bloomfilter.AbstractBloomFilter;
+import com.sym.structure.bloomfilter.hash.Hasher;
+import com.sym.structure.bloomfilter.hash.Hashers;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的布隆过滤器.
+ * <p>
+ * {@link LongArrayBloomFilter#setBit(int)}是"读出long - 置位 - 写回"三步操作, 两个线程同时修改同一个long时,
+ * 后写回的线程会把先写回的线程设置的位覆盖掉, 导致已经添加过的元素被判定为不存在(假阴性),
+ * 这对布隆过滤器来说是不允许的. 这里使用{@link AtomicLongArray}存放位数组, 通过CAS置位,
+ * 多个线程可以无锁地同时添加和查询. 位一旦被置为1就不会再变回0, 所以查询时直接读取即可.
+ *
+ * @author shenyanming
+ * Created on 2021/2/16 9:30.
+ */
+public class ConcurrentBloomFilter<T> extends AbstractBloomFilter<T> {
+
+    private final AtomicLongArray words;
+
+    public ConcurrentBloomFilter(int dataCount, double misjudgmentRate) {
+        this(dataCount, misjudgmentRate, Hashers.murmur3());
+    }
+
+    public ConcurrentBloomFilter(int dataCount, double misjudgmentRate, Hasher<? super T> hasher) {
+        super(dataCount, misjudgmentRate, hasher);
+        this.words = new AtomicLongArray(bitCount / Long.SIZE + 1);
+    }
+
+    @Override
+    protected void setBit(int index) {
+        int i = index >>> 6;
+        long mask = 1L << index;
+        long old;
+        do {
+            old = words.get(i);
+            if ((old & mask) != 0) {
+                // 已经被置位了, 不需要再写, 避免热点位上无意义的CAS竞争
+                return;
+            }
+        } while (!words.compareAndSet(i, old, old | mask));
+    }
+
+    @Override
+    protected boolean existBit(int index) {
+        return (words.get(index >>> 6) & 1L << index) != 0;
+    }
+}
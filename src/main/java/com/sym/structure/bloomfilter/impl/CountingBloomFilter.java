@@ -0,0 +1,91 @@
+package com.sym.structure.bloomfilter.impl;
+
+import com.sym.structure.bloomfilter.AbstractBloomFilter;
+import com.sym.structure.bloomfilter.IDeletableBloomFilter;
+import com.sym.structure.bloomfilter.hash.Hasher;
+import com.sym.structure.bloomfilter.hash.Hashers;
+
+import java.util.Objects;
+
+/**
+ * 计数布隆过滤器(counting bloom filter), 支持删除元素.
+ * <p>
+ * 把普通布隆过滤器的每个二进制位换成一个4位的计数器: 添加元素时把k个计数器加1, 删除时减1,
+ * 计数器大于0就表示对应的位为1. 16个计数器打包在一个long中, 内存是普通布隆过滤器的4倍.
+ * <p>
+ * 4位计数器最大为15, 在合理的负载下计数器溢出的概率极低. 计数器一旦达到15就不再增加也不再减少,
+ * 因为已经不知道它真实的值, 贸然减少可能导致其它元素被误判为不存在(假阴性).
+ *
+ * @author shenyanming
+ * Created on 2021/2/19 10:00.
+ */
+public class CountingBloomFilter<T> extends AbstractBloomFilter<T> implements IDeletableBloomFilter<T> {
+
+    /**
+     * 每个计数器的位数
+     */
+    private static final int COUNTER_BITS = 4;
+
+    /**
+     * 计数器的最大值
+     */
+    private static final long MAX_COUNT = (1L << COUNTER_BITS) - 1;
+
+    /**
+     * 每个long包含的计数器个数
+     */
+    private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+
+    private final long[] counters;
+
+    public CountingBloomFilter(int dataCount, double misjudgmentRate) {
+        this(dataCount, misjudgmentRate, Hashers.murmur3());
+    }
+
+    public CountingBloomFilter(int dataCount, double misjudgmentRate, Hasher<? super T> hasher) {
+        super(dataCount, misjudgmentRate, hasher);
+        this.counters = new long[bitCount / COUNTERS_PER_WORD + 1];
+    }
+
+    @Override
+    public boolean remove(T t) {
+        Objects.requireNonNull(t, "element is null");
+        if (!contains(t)) {
+            return false;
+        }
+        long hash = hash(t);
+        for (int i = 0; i < hashCount; i++) {
+            decrement(probeIndex(hash, i));
+        }
+        return true;
+    }
+
+    /**
+     * 添加元素时把计数器加1
+     */
+    @Override
+    protected void setBit(int index) {
+        int word = index / COUNTERS_PER_WORD;
+        int shift = (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+        long count = counters[word] >>> shift & MAX_COUNT;
+        if (count < MAX_COUNT) {
+            counters[word] += 1L << shift;
+        }
+    }
+
+    @Override
+    protected boolean existBit(int index) {
+        int shift = (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+        return (counters[index / COUNTERS_PER_WORD] >>> shift & MAX_COUNT) != 0;
+    }
+
+    private void decrement(int index) {
+        int word = index / COUNTERS_PER_WORD;
+        int shift = (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+        long count = counters[word] >>> shift & MAX_COUNT;
+        // 计数器为0时不能再减, 否则会借位, 破坏相邻的计数器; 溢出的计数器不再减少
+        if (count > 0 && count < MAX_COUNT) {
+            counters[word] -= 1L << shift;
+        }
+    }
+}
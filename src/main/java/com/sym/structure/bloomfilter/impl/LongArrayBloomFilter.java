@@ -1,10 +1,16 @@
 package com.sym.structure.bloomfilter.impl;
 
 import com.sym.structure.bloomfilter.AbstractBloomFilter;
+import com.sym.structure.bloomfilter.hash.Hasher;
+import com.sym.structure.bloomfilter.hash.Hashers;
 import lombok.AllArgsConstructor;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+
 /**
- * 基于Long数组实现的布隆过滤器
+ * 基于Long数组实现的布隆过滤器, 不是线程安全的, 多线程并发添加时请使用{@link ConcurrentBloomFilter}
  *
  * @author shenyanming
  * Created on 2021/1/16 10:00.
@@ -18,13 +24,105 @@ public class LongArrayBloomFilter<T> extends AbstractBloomFilter<T> {
     private long[] longArray;
 
     public LongArrayBloomFilter(int dataCount, double misjudgmentRate) {
+        this(dataCount, misjudgmentRate, Hashers.murmur3());
+    }
+
+    public LongArrayBloomFilter(int dataCount, double misjudgmentRate, Hasher<? super T> hasher) {
         // 通过父类计算需要的二进制位总数量
-        super(dataCount, misjudgmentRate);
+        super(dataCount, misjudgmentRate, hasher);
         // 初始化整型数组
         int size = bitCount / Long.SIZE;
         longArray = new long[++size];
     }
 
+    /**
+     * 位数组, 用于序列化, 不会拷贝
+     */
+    long[] words() {
+        return longArray;
+    }
+
+    /**
+     * 并集, 见{@link #union(Collection)}
+     *
+     * @param other 其它布隆过滤器
+     * @return 当前过滤器
+     */
+    public LongArrayBloomFilter<T> union(LongArrayBloomFilter<T> other) {
+        return union(Collections.singletonList(other));
+    }
+
+    /**
+     * 并集: 把其它布隆过滤器的位数组按位或到当前过滤器中, 一次遍历位数组就能合并任意多个分片.
+     * 合并后的结果和把所有分片的元素添加到同一个过滤器中完全一样.
+     * 注意这是原地修改: 当前过滤器会变成并集, 原来的内容不再保留; 参与合并的其它过滤器不会被修改
+     *
+     * @param others 其它布隆过滤器, 必须和当前过滤器兼容, 即位数、哈希函数个数、哈希函数和种子都相同.
+     *               哈希函数通过{@link Object#equals(Object)}比较, 而{@link Hashers#bytes(java.util.function.Function)}
+     *               每次调用都会返回新的实例, 所以要合并的过滤器必须共用同一个{@link Hasher}实例
+     * @return 当前过滤器
+     */
+    public LongArrayBloomFilter<T> union(Collection<? extends LongArrayBloomFilter<T>> others) {
+        long[][] words = wordsOf(others);
+        for (int i = 0; i < longArray.length; i++) {
+            long word = longArray[i];
+            for (long[] other : words) {
+                word |= other[i];
+            }
+            longArray[i] = word;
+        }
+        return this;
+    }
+
+    /**
+     * 交集, 见{@link #intersect(Collection)}
+     *
+     * @param other 其它布隆过滤器
+     * @return 当前过滤器
+     */
+    public LongArrayBloomFilter<T> intersect(LongArrayBloomFilter<T> other) {
+        return intersect(Collections.singletonList(other));
+    }
+
+    /**
+     * 交集: 把其它布隆过滤器的位数组按位与到当前过滤器中, 和{@link #union(Collection)}一样是原地修改当前过滤器.
+     * 注意结果不等于"只添加交集元素"的过滤器, 两个集合各自的元素可能恰好共同置位了某些位置,
+     * 所以交集的误判率会高于同样元素个数的普通过滤器, 但仍然不会漏判
+     *
+     * @param others 其它布隆过滤器, 必须和当前过滤器兼容
+     * @return 当前过滤器
+     */
+    public LongArrayBloomFilter<T> intersect(Collection<? extends LongArrayBloomFilter<T>> others) {
+        long[][] words = wordsOf(others);
+        for (int i = 0; i < longArray.length; i++) {
+            long word = longArray[i];
+            for (long[] other : words) {
+                word &= other[i];
+            }
+            longArray[i] = word;
+        }
+        return this;
+    }
+
+    /**
+     * 根据位数组的填充率估算已添加的不同元素个数: n ≈ -(m / k) * ln(1 - X / m),
+     * 其中m是位数, k是哈希函数个数, X是值为1的位数. 添加的元素远超预估数据量、位数组接近填满时误差会迅速变大,
+     * 全部填满时返回{@link Long#MAX_VALUE}
+     *
+     * @return 估算的元素个数
+     */
+    public long approximateElementCount() {
+        long bits = 0;
+        for (long word : longArray) {
+            bits += Long.bitCount(word);
+        }
+        if (bits >= bitCount) {
+            return Long.MAX_VALUE;
+        }
+        double count = -Math.log1p(-(double) bits / bitCount) * bitCount / hashCount;
+        return Math.round(count);
+    }
+
     @Override
     protected void setBit(int index) {
         // 计算出要使用long数组中的哪一个long、哪一位
@@ -45,8 +143,28 @@ public class LongArrayBloomFilter<T> extends AbstractBloomFilter<T> {
         // 取出数组中的对应的long数
         long l = longArray[pair.index];
         // 与setBit()方法相反, 指定位置为1, 其它位置为0, 如果进行与运算后,
-        // 值还大于0, 说明原先的值就为1, 反之就是0.
-        return (l & (1L << pair.bit)) > 0;
+        // 值不等于0, 说明原先的值就为1, 反之就是0. 注意不能判断大于0, 第63位是long的符号位
+        return (l & (1L << pair.bit)) != 0;
+    }
+
+    /**
+     * 检查其它过滤器是否和当前过滤器兼容, 并取出它们的位数组
+     */
+    private long[][] wordsOf(Collection<? extends LongArrayBloomFilter<T>> others) {
+        Objects.requireNonNull(others, "others is null");
+        long[][] words = new long[others.size()][];
+        int i = 0;
+        for (LongArrayBloomFilter<T> other : others) {
+            Objects.requireNonNull(other, "bloom filter is null");
+            if (other.bitCount != bitCount || other.hashCount != hashCount || other.seed != seed
+                    || !other.hasher.equals(hasher)) {
+                throw new IllegalArgumentException("incompatible bloom filter, bitCount=" + other.bitCount
+                        + ", hashCount=" + other.hashCount + ", seed=" + other.seed
+                        + ", expected bitCount=" + bitCount + ", hashCount=" + hashCount + ", seed=" + seed);
+            }
+            words[i++] = other.longArray;
+        }
+        return words;
     }
 
     /**
@@ -59,7 +177,7 @@ public class LongArrayBloomFilter<T> extends AbstractBloomFilter<T> {
         // 首先, 确定long数组的下标, 即 使用哪一个long
         int idx = index / Long.SIZE;
         // 其次, 从选出的long中, 定位它是处于哪一位
-        int num = index % (Long.SIZE - 1);
+        int num = index % Long.SIZE;
         return Pair.of(idx, num);
     }
 
@@ -0,0 +1,37 @@
+package com.sym.structure.bloomfilter.impl;
+
+import com.sym.structure.bloomfilter.AbstractBloomFilter;
+import com.sym.structure.bloomfilter.hash.Hasher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 只读的布隆过滤器, 位数组直接使用内存映射的文件, 由{@link BloomFilterFiles#map(java.nio.file.Path, Hasher)}创建.
+ * 文件内容按需由操作系统加载到页缓存中, 不会拷贝到堆上, 多个进程映射同一个文件时共用同一份物理内存.
+ *
+ * @author shenyanming
+ * Created on 2021/2/20 11:00.
+ */
+public class MappedBloomFilter<T> extends AbstractBloomFilter<T> {
+
+    /**
+     * 位数组, position为0的位置是第一个long
+     */
+    private final ByteBuffer words;
+
+    MappedBloomFilter(int dataCount, double misjudgmentRate, int bitCount, int hashCount, Hasher<? super T> hasher,
+                      int seed, ByteBuffer words) {
+        super(dataCount, misjudgmentRate, bitCount, hashCount, hasher, seed);
+        this.words = words;
+    }
+
+    @Override
+    protected void setBit(int index) {
+        throw new UnsupportedOperationException("mapped bloom filter is read-only");
+    }
+
+    @Override
+    protected boolean existBit(int index) {
+        return (words.getLong((index >>> 6) << 3) & 1L << index) != 0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.sym.structure.bloomfilter.impl;
+
+import com.sym.structure.bloomfilter.IBloomFilter;
+import com.sym.structure.bloomfilter.hash.Hasher;
+import com.sym.structure.bloomfilter.hash.Hashers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 可扩容的布隆过滤器(scalable bloom filter).
+ * <p>
+ * 普通的布隆过滤器在创建时就根据预估数据量确定了位数组的大小, 添加的元素超过预估数据量以后,
+ * 误判率会悄无声息地不断升高. 可扩容的布隆过滤器由若干个普通的布隆过滤器(切片)组成:
+ * 新元素总是添加到最后一个切片中, 最后一个切片装满以后, 就追加一个新的切片, 新切片的容量是上一个的 s 倍,
+ * 误判率是上一个的 r 倍(r < 1). 查询时只要任意一个切片包含这个元素, 就认为元素可能存在.
+ * <p>
+ * 整体的误判率不超过各个切片误判率之和: P0 * (1 + r + r^2 + ...) < P0 / (1 - r), 取 P0 = P * (1 - r),
+ * 无论添加多少元素, 整体误判率都不会超过配置的P. 切片的容量按几何级数增长, 切片的数量只和数据量的对数成正比.
+ *
+ * @author shenyanming
+ * Created on 2021/2/18 10:10.
+ */
+public class ScalableBloomFilter<T> implements IBloomFilter<T> {
+
+    /**
+     * 默认的容量增长倍数
+     */
+    private static final int DEFAULT_GROWTH_FACTOR = 2;
+
+    /**
+     * 默认的误判率收紧比例
+     */
+    private static final double DEFAULT_TIGHTENING_RATIO = 0.5;
+
+    private final int growthFactor;
+    private final double tighteningRatio;
+    private final Hasher<? super T> hasher;
+
+    private final List<LongArrayBloomFilter<T>> slices = new ArrayList<>();
+
+    /**
+     * 最后一个切片的容量和误判率
+     */
+    private int sliceCapacity;
+    private double sliceMisjudgmentRate;
+
+    /**
+     * 最后一个切片已经添加的元素个数
+     */
+    private int sliceSize;
+
+    /**
+     * 已经添加的元素个数, 被判定为已存在的元素不会重复计数
+     */
+    private long size;
+
+    public ScalableBloomFilter(int initialCapacity, double misjudgmentRate) {
+        this(initialCapacity, misjudgmentRate, DEFAULT_GROWTH_FACTOR, DEFAULT_TIGHTENING_RATIO, Hashers.murmur3());
+    }
+
+    /**
+     * 构造可扩容的布隆过滤器
+     *
+     * @param initialCapacity 第一个切片的容量
+     * @param misjudgmentRate 整体的误判率, (0, 1)
+     * @param growthFactor    每个新切片的容量是上一个的多少倍, 至少为1
+     * @param tighteningRatio 每个新切片的误判率是上一个的多少倍, (0, 1)
+     * @param hasher          哈希函数
+     */
+    public ScalableBloomFilter(int initialCapacity, double misjudgmentRate, int growthFactor,
+                               double tighteningRatio, Hasher<? super T> hasher) {
+        if (initialCapacity <= 0 || misjudgmentRate <= 0 || misjudgmentRate >= 1) {
+            throw new IllegalArgumentException("valid parameter");
+        }
+        if (growthFactor < 1 || tighteningRatio <= 0 || tighteningRatio >= 1) {
+            throw new IllegalArgumentException("growthFactor must be >= 1 and tighteningRatio must be in (0, 1)");
+        }
+        this.growthFactor = growthFactor;
+        this.tighteningRatio = tighteningRatio;
+        this.hasher = Objects.requireNonNull(hasher, "hasher is null");
+        this.sliceCapacity = initialCapacity;
+        this.sliceMisjudgmentRate = misjudgmentRate * (1 - tighteningRatio);
+        slices.add(new LongArrayBloomFilter<>(sliceCapacity, sliceMisjudgmentRate, hasher));
+    }
+
+    @Override
+    public void put(T t) {
+        Objects.requireNonNull(t, "element is null");
+        if (contains(t)) {
+            // 已经存在(或者被误判为存在)的元素不需要再添加, 否则会重复占用切片的容量
+            return;
+        }
+        if (sliceSize >= sliceCapacity) {
+            grow();
+        }
+        slices.get(slices.size() - 1).put(t);
+        sliceSize++;
+        size++;
+    }
+
+    @Override
+    public void put(Collection<T> collection) {
+        Objects.requireNonNull(collection, "collection is null");
+        collection.forEach(this::put);
+    }
+
+    @Override
+    public boolean contains(T t) {
+        Objects.requireNonNull(t, "element is null");
+        // 从最大的切片开始查, 大部分元素都在后面的切片中
+        for (int i = slices.size() - 1; i >= 0; i--) {
+            if (slices.get(i).contains(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 已经添加的元素个数
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return 切片的个数
+     */
+    public int sliceCount() {
+        return slices.size();
+    }
+
+    /**
+     * 追加一个新的切片, 容量超过int的范围时不再增长
+     */
+    private void grow() {
+        sliceCapacity = (int) Math.min(Integer.MAX_VALUE, (long) sliceCapacity * growthFactor);
+        sliceMisjudgmentRate *= tighteningRatio;
+        slices.add(new LongArrayBloomFilter<>(sliceCapacity, sliceMisjudgmentRate, hasher));
+        sliceSize = 0;
+    }
+}
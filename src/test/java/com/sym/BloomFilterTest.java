@@ -1,13 +1,33 @@
 package com.sym;
 
+import com.sym.structure.bloomfilter.AbstractBloomFilter;
 import com.sym.structure.bloomfilter.IBloomFilter;
+import com.sym.structure.bloomfilter.hash.Hasher;
+import com.sym.structure.bloomfilter.hash.Hashers;
 import com.sym.structure.bloomfilter.impl.BitSetBloomFilter;
+import com.sym.structure.bloomfilter.impl.BlockedBloomFilter;
+import com.sym.structure.bloomfilter.impl.BloomFilterFiles;
+import com.sym.structure.bloomfilter.impl.ConcurrentBloomFilter;
+import com.sym.structure.bloomfilter.impl.CountingBloomFilter;
 import com.sym.structure.bloomfilter.impl.LongArrayBloomFilter;
+import com.sym.structure.bloomfilter.impl.MappedBloomFilter;
+import com.sym.structure.bloomfilter.impl.ScalableBloomFilter;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
  * 布隆过滤器测试类
@@ -28,6 +48,375 @@ public class BloomFilterTest {
         run(new LongArrayBloomFilter<>(100_0000, 0.1));
     }
 
+    /**
+     * 分块布隆过滤器和普通布隆过滤器对比查询耗时和误判率, 位数组要远大于CPU缓存才能体现出差别
+     */
+    @Test
+    public void test03() {
+        int dataCount = 5_000_000;
+        Integer[] members = new Integer[dataCount];
+        Integer[] others = new Integer[dataCount];
+        Random random = new Random(7);
+        for (int i = 0; i < dataCount; i++) {
+            members[i] = random.nextInt();
+            others[i] = random.nextInt();
+        }
+        benchmark("LongArrayBloomFilter", new LongArrayBloomFilter<>(dataCount, 0.01), members, others);
+        benchmark("BlockedBloomFilter", new BlockedBloomFilter<>(dataCount, 0.01), members, others);
+    }
+
+    /**
+     * 多个线程同时添加元素, 之后所有添加过的元素都必须能查到
+     */
+    @Test
+    public void test04() throws Exception {
+        int threads = 4;
+        int perThread = 250_000;
+        IBloomFilter<Integer> bloomFilter = new ConcurrentBloomFilter<>(threads * perThread, 0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int from = t * perThread;
+            futures.add(executor.submit(() -> {
+                for (int i = from; i < from + perThread; i++) {
+                    bloomFilter.put(i);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        for (int i = 0; i < threads * perThread; i++) {
+            Assert.assertTrue("并发添加后丢失了元素: " + i, bloomFilter.contains(i));
+        }
+    }
+
+    /**
+     * 经验误判率: 添加满预估数量的元素以后, 用没有添加过的元素测试, 误判率要符合配置.
+     * 连续的整数和字符串是最容易暴露哈希函数质量问题的输入
+     */
+    @Test
+    public void test05() {
+        int dataCount = 1_000_000;
+        double misjudgmentRate = 0.01;
+        List<IBloomFilter<Integer>> filters = new ArrayList<>();
+        filters.add(new BitSetBloomFilter<>(dataCount, misjudgmentRate));
+        filters.add(new LongArrayBloomFilter<>(dataCount, misjudgmentRate));
+        filters.add(new ConcurrentBloomFilter<>(dataCount, misjudgmentRate));
+        filters.add(new BlockedBloomFilter<>(dataCount, misjudgmentRate));
+        for (IBloomFilter<Integer> bloomFilter : filters) {
+            for (int i = 0; i < dataCount; i++) {
+                bloomFilter.put(i);
+            }
+            int positives = 0;
+            for (int i = dataCount; i < dataCount * 11; i++) {
+                if (bloomFilter.contains(i)) {
+                    positives++;
+                }
+            }
+            double rate = (double) positives / (dataCount * 10);
+            log.info("{}: 配置的误判率: {}, 实际的误判率: {}", bloomFilter.getClass().getSimpleName(), misjudgmentRate, rate);
+            Assert.assertTrue("实际的误判率 " + rate + " 超过了配置", rate < misjudgmentRate * 1.1);
+        }
+
+        IBloomFilter<String> bloomFilter = new LongArrayBloomFilter<>(dataCount, misjudgmentRate);
+        for (int i = 0; i < dataCount; i++) {
+            bloomFilter.put("user:" + i);
+        }
+        int positives = 0;
+        for (int i = dataCount; i < dataCount * 2; i++) {
+            if (bloomFilter.contains("user:" + i)) {
+                positives++;
+            }
+        }
+        double rate = (double) positives / dataCount;
+        log.info("字符串: 配置的误判率: {}, 实际的误判率: {}", misjudgmentRate, rate);
+        Assert.assertTrue("实际的误判率 " + rate + " 超过了配置", rate < misjudgmentRate * 1.1);
+    }
+
+    /**
+     * 可扩容的布隆过滤器: 添加的元素远超初始容量时, 误判率依然符合配置;
+     * 作为对比, 同样初始容量的普通布隆过滤器已经几乎完全失效
+     */
+    @Test
+    public void test06() {
+        int initialCapacity = 1000;
+        int dataCount = 1_000_000;
+        ScalableBloomFilter<Integer> scalable = new ScalableBloomFilter<>(initialCapacity, 0.01);
+        IBloomFilter<Integer> fixed = new LongArrayBloomFilter<>(initialCapacity, 0.01);
+        for (int i = 0; i < dataCount; i++) {
+            scalable.put(i);
+            fixed.put(i);
+        }
+        int scalablePositives = 0;
+        int fixedPositives = 0;
+        for (int i = dataCount; i < dataCount * 2; i++) {
+            if (scalable.contains(i)) {
+                scalablePositives++;
+            }
+            if (fixed.contains(i)) {
+                fixedPositives++;
+            }
+        }
+        for (int i = 0; i < dataCount; i++) {
+            Assert.assertTrue(scalable.contains(i));
+        }
+        double rate = (double) scalablePositives / dataCount;
+        log.info("切片数: {}, 元素个数: {}, 可扩容的误判率: {}, 固定大小的误判率: {}", scalable.sliceCount(),
+                scalable.size(), rate, (double) fixedPositives / dataCount);
+        Assert.assertTrue("实际的误判率 " + rate + " 超过了配置", rate < 0.01 * 1.1);
+    }
+
+    /**
+     * 计数布隆过滤器: 删除元素以后, 剩下的元素依然存在, 被删除的元素只会因为误判而存在.
+     * 和普通布隆过滤器对比每个元素占用的内存和查询吞吐量
+     */
+    @Test
+    public void test07() {
+        int dataCount = 1_000_000;
+        CountingBloomFilter<Integer> counting = new CountingBloomFilter<>(dataCount, 0.01);
+        for (int i = 0; i < dataCount; i++) {
+            counting.put(i);
+        }
+        for (int i = 0; i < dataCount; i += 2) {
+            Assert.assertTrue(counting.remove(i));
+        }
+        int positives = 0;
+        for (int i = 0; i < dataCount; i++) {
+            if (i % 2 == 1) {
+                Assert.assertTrue("删除元素后剩下的元素丢失了: " + i, counting.contains(i));
+            } else if (counting.contains(i)) {
+                positives++;
+            }
+        }
+        log.info("删除一半元素后, 被删除元素的误判率: {}", (double) positives / (dataCount / 2));
+
+        // 一半的key会被添加到布隆过滤器中, 正好达到预估数据量
+        Integer[] keys = new Integer[dataCount * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        compare("LongArrayBloomFilter", () -> new LongArrayBloomFilter<>(dataCount, 0.01), keys);
+        compare("CountingBloomFilter", () -> new CountingBloomFilter<>(dataCount, 0.01), keys);
+    }
+
+    /**
+     * 保存布隆过滤器, 再以内存映射的方式加载, 加载后的查询结果要和原来的完全一致
+     */
+    @Test
+    public void test08() throws IOException {
+        int dataCount = 1_000_000;
+        LongArrayBloomFilter<Integer> bloomFilter = new LongArrayBloomFilter<>(dataCount, 0.01);
+        for (int i = 0; i < dataCount; i++) {
+            bloomFilter.put(i);
+        }
+        Path path = Files.createTempFile("bloom", ".bin");
+        long start = System.nanoTime();
+        BloomFilterFiles.save(bloomFilter, path);
+        long saved = System.nanoTime();
+        MappedBloomFilter<Integer> mapped = BloomFilterFiles.map(path);
+        long mappedAt = System.nanoTime();
+        log.info("文件大小: {}字节, 保存耗时: {}ms, 映射耗时: {}ms", Files.size(path),
+                (saved - start) / 1_000_000, (mappedAt - saved) / 1_000_000);
+        Assert.assertEquals(bloomFilter.getBitCount(), mapped.getBitCount());
+        Assert.assertEquals(bloomFilter.getHashCount(), mapped.getHashCount());
+        for (int i = 0; i < dataCount * 2; i++) {
+            Assert.assertEquals(bloomFilter.contains(i), mapped.contains(i));
+        }
+        try {
+            mapped.put(-1);
+            Assert.fail("内存映射的布隆过滤器是只读的");
+        } catch (UnsupportedOperationException e) {
+            log.info(e.getMessage());
+        }
+
+        // 上一次保存到一半崩溃残留的临时文件不影响已有的文件, 再次保存时会被覆盖
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tmp, new byte[]{0x53, 0x59});
+        Assert.assertEquals(bloomFilter.getBitCount(), BloomFilterFiles.map(path).getBitCount());
+        BloomFilterFiles.save(bloomFilter, path);
+        Assert.assertFalse(Files.exists(tmp));
+        Assert.assertTrue(BloomFilterFiles.map(path).contains(0));
+
+        Files.write(path, new byte[64]);
+        try {
+            BloomFilterFiles.map(path);
+            Assert.fail("不是布隆过滤器文件");
+        } catch (IllegalStateException e) {
+            log.info(e.getMessage());
+        }
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(tmp);
+    }
+
+    /**
+     * 基本类型的批量接口: 结果和逐个装箱调用一致, 并比较两者的耗时
+     */
+    @Test
+    public void test09() {
+        int dataCount = 2_000_000;
+        long[] members = new long[dataCount];
+        long[] others = new long[dataCount];
+        Random random = new Random(9);
+        for (int i = 0; i < dataCount; i++) {
+            members[i] = random.nextLong();
+            others[i] = random.nextLong();
+        }
+        List<AbstractBloomFilter<Long>> filters = new ArrayList<>();
+        filters.add(new LongArrayBloomFilter<>(dataCount, 0.01));
+        filters.add(new BlockedBloomFilter<>(dataCount, 0.01));
+        filters.add(new CountingBloomFilter<>(dataCount, 0.01));
+        for (AbstractBloomFilter<Long> bloomFilter : filters) {
+            String name = bloomFilter.getClass().getSimpleName();
+            bloomFilter.putAll(members);
+            for (long member : members) {
+                Assert.assertTrue(bloomFilter.contains(member));
+            }
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                int boxedHits = 0;
+                for (long other : others) {
+                    boxedHits += bloomFilter.contains(other) ? 1 : 0;
+                }
+                long boxed = System.nanoTime();
+                boolean[] result = bloomFilter.containsAll(others);
+                long batched = System.nanoTime();
+                int batchHits = 0;
+                for (int i = 0; i < dataCount; i++) {
+                    Assert.assertEquals(bloomFilter.contains(others[i]), result[i]);
+                    batchHits += result[i] ? 1 : 0;
+                }
+                Assert.assertEquals(boxedHits, batchHits);
+                log.info("{}: 逐个查询{}ms, 批量查询{}ms, 误判{}个", name, (boxed - start) / 1_000_000,
+                        (batched - boxed) / 1_000_000, batchHits);
+            }
+            for (boolean hit : bloomFilter.containsAll(members)) {
+                Assert.assertTrue(hit);
+            }
+        }
+        LongArrayBloomFilter<Object> bloomFilter = new LongArrayBloomFilter<>(1000, 0.01);
+        bloomFilter.putAll(new int[]{1, 2, 3});
+        bloomFilter.putAll(new byte[][]{"a".getBytes(), "b".getBytes()});
+        Assert.assertTrue(bloomFilter.contains(2));
+        Assert.assertTrue(bloomFilter.contains("b".getBytes()));
+        Assert.assertArrayEquals(new boolean[]{true, true}, bloomFilter.containsAll(new int[]{1, 3}));
+        Assert.assertArrayEquals(new boolean[0], bloomFilter.containsAll(new long[0]));
+        Assert.assertTrue(bloomFilter.containsAll(new byte[][]{"a".getBytes()})[0]);
+    }
+
+    /**
+     * 分片合并: 并集、交集和元素个数估算
+     */
+    @Test
+    public void test10() {
+        int dataCount = 1_000_000;
+        int shardCount = 4;
+        List<LongArrayBloomFilter<Integer>> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new LongArrayBloomFilter<>(dataCount, 0.01));
+        }
+        LongArrayBloomFilter<Integer> all = new LongArrayBloomFilter<>(dataCount, 0.01);
+        for (int i = 0; i < dataCount; i++) {
+            shards.get(i % shardCount).put(i);
+            all.put(i);
+        }
+        long estimate = shards.get(0).approximateElementCount();
+        log.info("单个分片的估算元素个数: {}, 实际: {}", estimate, dataCount / shardCount);
+        Assert.assertEquals(dataCount / shardCount, estimate, dataCount / shardCount * 0.02);
+
+        long start = System.nanoTime();
+        // union是原地修改, 第一个分片本身变成了并集
+        LongArrayBloomFilter<Integer> union = shards.get(0).union(shards.subList(1, shardCount));
+        Assert.assertSame(shards.get(0), union);
+        log.info("合并{}个分片耗时: {}ms", shardCount, (System.nanoTime() - start) / 1_000_000);
+        for (int i = 0; i < dataCount * 2; i++) {
+            Assert.assertEquals(all.contains(i), union.contains(i));
+        }
+        estimate = union.approximateElementCount();
+        log.info("并集的估算元素个数: {}, 实际: {}", estimate, dataCount);
+        Assert.assertEquals(dataCount, estimate, dataCount * 0.02);
+
+        // 交集: [0, 600000) 和 [400000, 1000000) 的公共部分
+        LongArrayBloomFilter<Integer> left = new LongArrayBloomFilter<>(dataCount, 0.01);
+        LongArrayBloomFilter<Integer> right = new LongArrayBloomFilter<>(dataCount, 0.01);
+        for (int i = 0; i < 600_000; i++) {
+            left.put(i);
+            right.put(dataCount - 1 - i);
+        }
+        left.intersect(right);
+        for (int i = 400_000; i < 600_000; i++) {
+            Assert.assertTrue(left.contains(i));
+        }
+        log.info("交集的估算元素个数: {}, 实际: {}", left.approximateElementCount(), 200_000);
+
+        try {
+            all.union(new LongArrayBloomFilter<>(dataCount, 0.001));
+            Assert.fail("参数不同的布隆过滤器不能合并");
+        } catch (IllegalArgumentException e) {
+            log.info(e.getMessage());
+        }
+
+        // 哈希函数按实例比较: 共用同一个实例才能合并
+        Hasher<Integer> hasher = Hashers.bytes(i -> String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+        new LongArrayBloomFilter<>(1000, 0.01, hasher).union(new LongArrayBloomFilter<>(1000, 0.01, hasher));
+        try {
+            new LongArrayBloomFilter<>(1000, 0.01, hasher).union(new LongArrayBloomFilter<>(1000, 0.01,
+                    Hashers.bytes(i -> String.valueOf(i).getBytes(StandardCharsets.UTF_8))));
+            Assert.fail("哈希函数不是同一个实例的布隆过滤器不能合并");
+        } catch (IllegalArgumentException e) {
+            log.info(e.getMessage());
+        }
+    }
+
+    private void compare(String name, Supplier<IBloomFilter<Integer>> factory, Integer[] keys) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        IBloomFilter<Integer> bloomFilter = factory.get();
+        long bytes = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        int count = 0;
+        for (int i = 0; i < keys.length; i += 2) {
+            bloomFilter.put(keys[i]);
+            count++;
+        }
+        long elapsed = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (Integer key : keys) {
+                bloomFilter.contains(key);
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        log.info("{}: 每个元素占用内存: {}字节, 查询吞吐量: {} ops/ms", name,
+                String.format("%.2f", (double) bytes / count), (long) keys.length * 1_000_000 / elapsed);
+    }
+
+    private void benchmark(String name, IBloomFilter<Integer> bloomFilter, Integer[] members, Integer[] others) {
+        for (Integer member : members) {
+            bloomFilter.put(member);
+        }
+        // 先预热一轮, 再计时
+        int positives = 0;
+        for (int round = 0; round < 2; round++) {
+            positives = 0;
+            long start = System.nanoTime();
+            for (Integer other : others) {
+                if (bloomFilter.contains(other)) {
+                    positives++;
+                }
+            }
+            for (Integer member : members) {
+                Assert.assertTrue(bloomFilter.contains(member));
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round == 1) {
+                log.info("{}: 每次查询耗时: {}ns, 误判率: {}", name,
+                        elapsed / (members.length + others.length), (double) positives / others.length);
+            }
+        }
+    }
+
     private void run(IBloomFilter<Integer> bloomFilter) {
         // 预先塞入100万个数字
         for (int i = 0; i < 100_0000; i++) {
@@ -1,8 +1,36 @@
 package com.sym;
 
+import com.sym.algorithm.example.cache.CacheStats;
+import com.sym.algorithm.example.cache.ICache;
+import com.sym.algorithm.example.cache.impl.ConcurrentLruCache;
+import com.sym.algorithm.example.cache.impl.ExpiringCache;
+import com.sym.algorithm.example.cache.impl.LfuCache;
+import com.sym.algorithm.example.cache.impl.LoadingCache;
 import com.sym.algorithm.example.cache.impl.LruCache;
+import com.sym.algorithm.example.cache.impl.OffHeapCache;
+import com.sym.algorithm.example.cache.impl.TinyLfuCache;
+import com.sym.algorithm.example.cache.simulator.CacheSimulator;
+import com.sym.algorithm.example.cache.simulator.Traces;
+import com.sym.algorithm.example.cache.support.CacheSnapshot;
+import com.sym.algorithm.example.cache.support.Codec;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * 缓存测试类
  *
@@ -36,4 +64,568 @@ public class CacheTest {
         lruCache.set("ee", "ee");
         System.out.println(lruCache);
     }
+
+    /**
+     * 基于频率桶实现的 LFU cache 测试
+     */
+    @Test
+    public void test02() {
+        LfuCache<String, String> lfuCache = new LfuCache<>(3);
+        lfuCache.set("aa", "aa");
+        lfuCache.set("bb", "bb");
+        lfuCache.set("cc", "cc");
+
+        // aa访问2次, bb访问1次, cc没有被访问
+        lfuCache.get("aa");
+        lfuCache.get("aa");
+        lfuCache.get("bb");
+        System.out.println(lfuCache);
+
+        // 容量已满, 会淘汰访问频率最低的cc
+        lfuCache.set("dd", "dd");
+        System.out.println(lfuCache);
+        Assert.assertNull(lfuCache.get("cc"));
+
+        // 此时bb和dd的访问频率都是2, 同一频率下按照 LRU 淘汰, 所以淘汰bb
+        lfuCache.get("dd");
+        lfuCache.set("ee", "ee");
+        System.out.println(lfuCache);
+        Assert.assertNull(lfuCache.get("bb"));
+        Assert.assertEquals("aa", lfuCache.get("aa"));
+        Assert.assertEquals("dd", lfuCache.get("dd"));
+
+        Assert.assertEquals("ee", lfuCache.remove("ee"));
+        Assert.assertEquals(2, lfuCache.size());
+    }
+
+    /**
+     * 多线程吞吐量测试: 分段加锁的{@link ConcurrentLruCache} 对比 全局加锁的{@link LruCache}
+     */
+    @Test
+    public void test03() throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        LruCache<Integer, Integer> lruCache = new LruCache<>(10000);
+        ICache<Integer, Integer> synchronizedCache = new ICache<Integer, Integer>() {
+            @Override
+            public synchronized void set(Integer key, Integer value) {
+                lruCache.set(key, value);
+            }
+
+            @Override
+            public synchronized Integer get(Integer key) {
+                return lruCache.get(key);
+            }
+
+            @Override
+            public synchronized Integer remove(Integer key) {
+                return lruCache.remove(key);
+            }
+        };
+        ConcurrentLruCache<Integer, Integer> concurrentCache = new ConcurrentLruCache<>(10000, threads);
+        // 先预热一次, 避免JIT对结果的影响
+        throughput(synchronizedCache, threads);
+        throughput(concurrentCache, threads);
+        System.out.println("全局锁 LruCache, ops/ms: " + throughput(synchronizedCache, threads));
+        System.out.println("分段锁 ConcurrentLruCache, ops/ms: " + throughput(concurrentCache, threads));
+    }
+
+    /**
+     * 多个线程同时对缓存进行读写(读写比 9:1), 返回每毫秒完成的操作数
+     */
+    private long throughput(ICache<Integer, Integer> cache, int threads) throws InterruptedException {
+        int opsPerThread = 200_000;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch end = new CountDownLatch(threads);
+        // 工作线程中抛出的异常不会传递给JUnit, 需要收集起来在主线程中断言
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int j = 0; j < opsPerThread; j++) {
+                        int key = random.nextInt(20000);
+                        if (random.nextInt(10) == 0) {
+                            cache.set(key, key);
+                        } else {
+                            Integer value = cache.get(key);
+                            if (value != null && value != key) {
+                                throw new IllegalStateException("缓存值错乱, key=" + key + ", value=" + value);
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    end.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        end.await();
+        assertNoFailure(failure);
+        long costMillis = Math.max(1, (System.nanoTime() - begin) / 1_000_000);
+        return (long) threads * opsPerThread / costMillis;
+    }
+
+    /**
+     * 扫描型访问下的命中率: {@link TinyLfuCache} 对比 {@link LruCache}
+     */
+    @Test
+    public void test04() {
+        int capacity = 1000;
+        double lruHitRate = hitRate(new LruCache<>(capacity));
+        double tinyLfuHitRate = hitRate(new TinyLfuCache<>(capacity));
+        System.out.println("LruCache 命中率: " + lruHitRate);
+        System.out.println("TinyLfuCache 命中率: " + tinyLfuHitRate);
+        Assert.assertTrue(tinyLfuHitRate > lruHitRate);
+    }
+
+    /**
+     * 回放一段访问记录: 80%的请求落在800个热点key上, 另外20%是从未出现过的key(模拟扫描),
+     * 未命中时回源并写入缓存
+     */
+    private double hitRate(ICache<Integer, Integer> cache) {
+        Random random = new Random(2021);
+        int requests = 200_000;
+        int hits = 0;
+        int scanKey = 1_000_000;
+        for (int i = 0; i < requests; i++) {
+            int key = random.nextInt(10) < 8 ? random.nextInt(800) : scanKey++;
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.set(key, key);
+            }
+        }
+        return (double) hits / requests;
+    }
+
+    /**
+     * 基于时间轮的过期缓存测试, 使用可以手动拨动的时钟
+     */
+    @Test
+    public void test05() {
+        AtomicLong clock = new AtomicLong();
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 10, 3, TimeUnit.SECONDS, clock::get);
+        cache.set("aa", "aa");
+        cache.set("bb", "bb");
+        cache.set("cc", "cc", 1, 0, TimeUnit.HOURS);
+
+        // 每隔2秒访问一次aa, 它的空闲时间一直被重置, 但是10秒的存活时间到了仍然会过期
+        for (int i = 0; i < 4; i++) {
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+            Assert.assertEquals("aa", cache.get("aa"));
+        }
+        // 8秒过去了, bb早已经空闲超时, 被时间轮回收
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.get("bb"));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        Assert.assertNull(cache.get("aa"));
+        System.out.println(cache);
+
+        // cc单独指定了1小时的存活时间, 且不限制空闲时间
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(59));
+        Assert.assertEquals("cc", cache.get("cc"));
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        Assert.assertEquals(0, cache.size());
+
+        // 过期时间落在一个tick(2^20纳秒)的中间时, 时间轮不能在过期时间之前回收它
+        long tick = 1L << 20;
+        clock.set((clock.get() / tick + 1) * tick);
+        cache.set("dd", "dd", tick + tick / 2, 0, TimeUnit.NANOSECONDS);
+        clock.addAndGet(tick);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals("dd", cache.get("dd"));
+        clock.addAndGet(tick / 2);
+        Assert.assertNull(cache.get("dd"));
+        clock.addAndGet(tick);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    /**
+     * 大量缓存同时存在时, 过期回收的耗时测试
+     */
+    @Test
+    public void test06() {
+        AtomicLong clock = new AtomicLong();
+        int count = 1_000_000;
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(count, 0, 0, TimeUnit.SECONDS, clock::get);
+        Random random = new Random(2021);
+        for (int i = 0; i < count; i++) {
+            cache.set(i, i, 1 + random.nextInt(3600), 0, TimeUnit.SECONDS);
+        }
+        long begin = System.nanoTime();
+        for (int i = 0; i < 3600; i++) {
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            cache.get(-1);
+        }
+        System.out.println("回收" + count + "条过期缓存耗时(ms): " + (System.nanoTime() - begin) / 1_000_000);
+        // 过期时间落在最后一个tick中间的缓存, 要等时间轮再走一个tick才会被回收
+        clock.addAndGet(1L << 20);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    /**
+     * 按权重(值的字节数)限制容量的 LRU 和 LFU 测试
+     */
+    @Test
+    public void test07() {
+        LruCache<String, byte[]> lruCache = new LruCache<>(1024, (k, v) -> v.length);
+        lruCache.set("aa", new byte[500]);
+        lruCache.set("bb", new byte[300]);
+        lruCache.set("cc", new byte[200]);
+        Assert.assertEquals(1000, lruCache.weight());
+
+        // 先访问aa, 最久没有被访问的就变成了bb, 写入dd超出了1024字节, bb被淘汰
+        lruCache.get("aa");
+        lruCache.set("dd", new byte[100]);
+        Assert.assertNull(lruCache.get("bb"));
+        Assert.assertEquals(800, lruCache.weight());
+
+        // 修改值时总权重也会增量调整
+        lruCache.set("dd", new byte[10]);
+        Assert.assertEquals(710, lruCache.weight());
+        // 超过最大权重的值不会被缓存
+        lruCache.set("ee", new byte[2048]);
+        Assert.assertNull(lruCache.get("ee"));
+
+        // 值在写入后发生了变化, 删除时减去的仍然是写入时计算的权重, 总权重不会漂移
+        LruCache<String, StringBuilder> mutableCache = new LruCache<>(100, (k, v) -> v.length());
+        StringBuilder value = new StringBuilder("abc");
+        mutableCache.set("aa", value);
+        value.append("defg");
+        mutableCache.remove("aa");
+        Assert.assertEquals(0, mutableCache.weight());
+
+        LfuCache<String, byte[]> lfuCache = new LfuCache<>(1024, (k, v) -> v.length);
+        lfuCache.set("aa", new byte[500]);
+        lfuCache.set("bb", new byte[300]);
+        lfuCache.set("cc", new byte[200]);
+        lfuCache.get("aa");
+        lfuCache.get("cc");
+        // 需要腾出476个字节, bb的访问频率最低, 淘汰它以后还不够, 接着淘汰同频率下更久未访问的aa
+        lfuCache.set("dd", new byte[500]);
+        Assert.assertNull(lfuCache.get("bb"));
+        Assert.assertNull(lfuCache.get("aa"));
+        Assert.assertEquals(700, lfuCache.weight());
+        Assert.assertEquals(2, lfuCache.size());
+    }
+
+    /**
+     * 多个线程同时未命中同一个key, 只会加载一次
+     */
+    @Test
+    public void test08() throws InterruptedException {
+        AtomicInteger loadCount = new AtomicInteger();
+        LoadingCache<String, String> cache = new LoadingCache<>(new ConcurrentLruCache<>(100), key -> {
+            loadCount.incrementAndGet();
+            // 模拟一次耗时的数据库查询
+            Thread.sleep(100);
+            return key.toUpperCase();
+        });
+        int threads = 16;
+        CountDownLatch latch = new CountDownLatch(threads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    Assert.assertEquals("AA", cache.get("aa"));
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        assertNoFailure(failure);
+        Assert.assertEquals(1, loadCount.get());
+
+        // 通过 get(key, loader) 指定其它的加载器
+        Assert.assertEquals("bb!", cache.get("bb", key -> key + "!"));
+        Assert.assertEquals("bb!", cache.get("bb"));
+    }
+
+    /**
+     * 加载的时间超过刷新时间后, 命中时先返回旧值, 同时在后台异步刷新
+     */
+    @Test
+    public void test09() throws InterruptedException {
+        AtomicInteger version = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LoadingCache<String, String> cache = new LoadingCache<>(new ConcurrentLruCache<>(100),
+                key -> key + version.incrementAndGet(), 50, TimeUnit.MILLISECONDS, executor);
+        Assert.assertEquals("aa1", cache.get("aa"));
+        Assert.assertEquals("aa1", cache.get("aa"));
+
+        Thread.sleep(60);
+        // 触发刷新, 但是仍然返回旧值
+        Assert.assertEquals("aa1", cache.get("aa"));
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+        Assert.assertEquals("aa2", cache.get("aa"));
+
+        // 刷新还没有完成时缓存被set()覆盖, 刷新的结果不能覆盖这个更新的值
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch overwritten = new CountDownLatch(1);
+        ExecutorService refresher = Executors.newSingleThreadExecutor();
+        LoadingCache<String, String> slowCache = new LoadingCache<>(new ConcurrentLruCache<>(100), key -> {
+            if (refreshing.getCount() == 0) {
+                overwritten.await();
+                return "stale";
+            }
+            return "v1";
+        }, 50, TimeUnit.MILLISECONDS, refresher);
+        Assert.assertEquals("v1", slowCache.get("aa"));
+        refreshing.countDown();
+        Thread.sleep(60);
+        Assert.assertEquals("v1", slowCache.get("aa"));
+        slowCache.set("aa", "v2");
+        overwritten.countDown();
+        refresher.shutdown();
+        Assert.assertTrue(refresher.awaitTermination(1, TimeUnit.SECONDS));
+        Assert.assertEquals("v2", slowCache.get("aa"));
+
+        // 刷新还没有完成时缓存被remove()删除, 随后的未命中用自己的加载器加载, 不会等待最终失败的刷新
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch removed = new CountDownLatch(1);
+        ExecutorService failingRefresher = Executors.newSingleThreadExecutor();
+        LoadingCache<String, String> removeCache = new LoadingCache<>(new ConcurrentLruCache<>(100), key -> {
+            if (refreshStarted.getCount() == 0) {
+                removed.await();
+                throw new IllegalStateException("刷新失败");
+            }
+            return "v1";
+        }, 50, TimeUnit.MILLISECONDS, failingRefresher);
+        Assert.assertEquals("v1", removeCache.get("aa"));
+        refreshStarted.countDown();
+        Thread.sleep(60);
+        Assert.assertEquals("v1", removeCache.get("aa"));
+        removeCache.remove("aa");
+        AtomicInteger loads = new AtomicInteger();
+        Assert.assertEquals("v3", removeCache.get("aa", key -> {
+            loads.incrementAndGet();
+            return "v3";
+        }));
+        removed.countDown();
+        failingRefresher.shutdown();
+        Assert.assertTrue(failingRefresher.awaitTermination(1, TimeUnit.SECONDS));
+        // 未命中加载的值已经放入缓存, 不需要再加载
+        Assert.assertEquals("v3", removeCache.get("aa", key -> "v4"));
+        Assert.assertEquals(1, loads.get());
+    }
+
+    /**
+     * 堆外缓存测试: 读写、覆盖、删除以及 CLOCK 淘汰
+     */
+    @Test
+    public void test10() {
+        OffHeapCache cache = new OffHeapCache(1000, 64);
+        for (int i = 0; i < 1000; i++) {
+            cache.set(bytes("key" + i), bytes("value" + i));
+        }
+        Assert.assertEquals(1000, cache.size());
+        Assert.assertEquals("value10", string(cache.get(bytes("key10"))));
+
+        cache.set(bytes("key10"), bytes("new value"));
+        Assert.assertEquals("new value", string(cache.get(bytes("key10"))));
+        Assert.assertEquals("value20", string(cache.remove(bytes("key20"))));
+        Assert.assertNull(cache.get(bytes("key20")));
+        Assert.assertEquals(999, cache.size());
+
+        // 缓存已满, 此时所有槽的访问标记都是1, 时钟指针转完一圈把标记全部清零后, 淘汰第0个槽里的key0
+        cache.set(bytes("key20"), bytes("value20"));
+        cache.set(bytes("key1000"), bytes("value1000"));
+        Assert.assertNull(cache.get(bytes("key0")));
+
+        // 访问一下key1~key100, 它们在接下来的淘汰中会得到第二次机会, 被淘汰的是key101~key199
+        for (int i = 1; i <= 100; i++) {
+            cache.get(bytes("key" + i));
+        }
+        for (int i = 1001; i < 1100; i++) {
+            cache.set(bytes("key" + i), bytes("value" + i));
+        }
+        Assert.assertEquals(1000, cache.size());
+        for (int i = 1; i <= 100; i++) {
+            Assert.assertNotNull(cache.get(bytes("key" + i)));
+        }
+        Assert.assertNull(cache.get(bytes("key101")));
+        Assert.assertNull(cache.get(bytes("key199")));
+        Assert.assertEquals("value200", string(cache.get(bytes("key200"))));
+        for (int i = 1000; i < 1100; i++) {
+            Assert.assertEquals("value" + i, string(cache.get(bytes("key" + i))));
+        }
+
+        // 槽的数量过大时, 索引表的字节数会溢出, 构造时就拒绝
+        try {
+            new OffHeapCache((1 << 27) + 1, 64);
+            Assert.fail("槽的数量超过了上限");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 缓存统计信息: 快照以及两次快照之间的增量
+     */
+    @Test
+    public void test11() {
+        LruCache<String, String> lruCache = new LruCache<>(2);
+        // 没有开启统计时, 返回全0的快照
+        lruCache.get("aa");
+        Assert.assertEquals(0, lruCache.stats().requestCount());
+
+        lruCache.recordStats();
+        lruCache.set("aa", "aa");
+        lruCache.set("bb", "bb");
+        lruCache.get("aa");
+        lruCache.get("cc");
+        CacheStats first = lruCache.stats();
+        Assert.assertEquals(1, first.hitCount());
+        Assert.assertEquals(1, first.missCount());
+
+        lruCache.set("cc", "cc");
+        lruCache.get("aa");
+        CacheStats second = lruCache.stats();
+        CacheStats delta = second.minus(first);
+        System.out.println(second);
+        Assert.assertEquals(1, delta.hitCount());
+        Assert.assertEquals(0, delta.missCount());
+        Assert.assertEquals(1, delta.evictionCount());
+        Assert.assertEquals(2.0 / 3, second.hitRate(), 1e-9);
+
+        LoadingCache<String, String> loadingCache = new LoadingCache<>(new ConcurrentLruCache<>(100), String::toUpperCase);
+        loadingCache.recordStats();
+        loadingCache.get("aa");
+        loadingCache.get("aa");
+        CacheStats stats = loadingCache.stats();
+        System.out.println(stats);
+        Assert.assertEquals(1, stats.hitCount());
+        Assert.assertEquals(1, stats.loadSuccessCount());
+    }
+
+    /**
+     * 缓存快照的导出和加载, 加载后的淘汰顺序和导出前一致
+     */
+    @Test
+    public void test12() throws IOException {
+        Path path = Files.createTempFile("cache", ".snapshot");
+        try {
+            LruCache<String, String> lruCache = new LruCache<>(1000);
+            for (int i = 0; i < 1000; i++) {
+                lruCache.set("key" + i, "value" + i);
+            }
+            // key0变为最近使用的, 此时最先被淘汰的是key1
+            lruCache.get("key0");
+            // 使用很小的映射窗口, 让导出和加载过程中多次重新映射
+            Assert.assertEquals(1000, CacheSnapshot.save(lruCache, path, Codec.utf8(), Codec.utf8(), 1024));
+
+            LruCache<String, String> restored = new LruCache<>(1000);
+            Assert.assertEquals(1000, CacheSnapshot.load(restored, path, Codec.utf8(), Codec.utf8(), 1024));
+            Assert.assertEquals(1000, restored.size());
+            restored.set("new", "new");
+            Assert.assertNull(restored.get("key1"));
+            Assert.assertEquals("value0", restored.get("key0"));
+
+            LfuCache<String, String> lfuCache = new LfuCache<>(3);
+            lfuCache.set("aa", "aa");
+            lfuCache.set("bb", "bb");
+            lfuCache.set("cc", "cc");
+            lfuCache.get("aa");
+            lfuCache.get("aa");
+            lfuCache.get("cc");
+            CacheSnapshot.save(lfuCache, path, Codec.utf8(), Codec.utf8());
+            LfuCache<String, String> restoredLfu = new LfuCache<>(3);
+            CacheSnapshot.load(restoredLfu, path, Codec.utf8(), Codec.utf8());
+            Assert.assertEquals(lfuCache.toString(), restoredLfu.toString());
+            System.out.println(restoredLfu);
+
+            // 导出到一半失败(相当于进程崩溃), 原来的快照仍然可以加载
+            Codec<String> failing = new Codec<String>() {
+                @Override
+                public byte[] encode(String s) {
+                    if ("value500".equals(s)) {
+                        throw new IllegalStateException("模拟导出过程中崩溃");
+                    }
+                    return Codec.utf8().encode(s);
+                }
+
+                @Override
+                public String decode(byte[] bytes) {
+                    return Codec.utf8().decode(bytes);
+                }
+            };
+            try {
+                CacheSnapshot.save(lruCache, path, Codec.utf8(), failing, 1024);
+                Assert.fail("编码失败时导出应该失败");
+            } catch (IllegalStateException e) {
+                System.out.println(e.getMessage());
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Assert.assertFalse(Files.exists(tmp));
+            // 上一次崩溃残留的半个临时文件也不影响加载
+            Files.write(tmp, new byte[]{0x53, 0x59});
+            restoredLfu = new LfuCache<>(3);
+            Assert.assertEquals(3, CacheSnapshot.load(restoredLfu, path, Codec.utf8(), Codec.utf8()));
+            Assert.assertEquals(lfuCache.toString(), restoredLfu.toString());
+            Assert.assertEquals(3, CacheSnapshot.save(lfuCache, path, Codec.utf8(), Codec.utf8()));
+            Assert.assertFalse(Files.exists(tmp));
+        } finally {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".tmp"));
+        }
+    }
+
+    /**
+     * 用Zipf分布、扫描以及文件中的访问轨迹回放所有的缓存策略
+     */
+    @Test
+    public void test13() throws IOException {
+        CacheSimulator simulator = CacheSimulator.withDefaultPolicies(10_000);
+
+        System.out.println("Zipf分布:");
+        long[] zipfian = Traces.zipfian(200_000, 100_000, 0.9, 2021);
+        CacheSimulator.print(simulator.run(zipfian));
+
+        System.out.println("Zipf分布 + 扫描:");
+        List<CacheSimulator.Result> results = simulator.run(
+                Traces.interleave(2021, zipfian, Traces.scan(100_000, 1_000_000)));
+        CacheSimulator.print(results);
+        // 扫描流量下, W-TinyLFU的命中率应该高于LRU
+        Assert.assertTrue(results.get(2).getHitRate() > results.get(0).getHitRate());
+
+        Path path = Files.createTempFile("cache", ".trace");
+        try {
+            Files.write(path, "a\nb\na\n\nc\na\n1\n".getBytes(StandardCharsets.UTF_8));
+            long[] trace = Traces.file(path);
+            Assert.assertEquals(6, trace.length);
+            Assert.assertEquals(trace[0], trace[2]);
+            Assert.assertEquals(1L, trace[5]);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * 断言工作线程中没有发生异常
+     */
+    private static void assertNoFailure(AtomicReference<Throwable> failure) {
+        Throwable e = failure.get();
+        if (e != null) {
+            throw new AssertionError("工作线程执行失败: " + e, e);
+        }
+    }
 }
@@ -0,0 +1,174 @@
+package com.sym;
+
+import com.sym.algorithm.example.segment.FileSegmentStore;
+import com.sym.algorithm.example.segment.ISegmentStore;
+import com.sym.algorithm.example.segment.Segment;
+import com.sym.algorithm.example.segment.SegmentIdGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 号段模式的ID生成器测试
+ *
+ * @author shenyanming
+ * Created on 2021/2/12 14:20
+ */
+public class SegmentTest {
+
+    /**
+     * 单线程: ID连续递增, 跨越号段时也不会中断; 预取及时完成时, 只有构造时同步租用了一次号段
+     */
+    @Test
+    public void test01() {
+        CountingStore store = new CountingStore();
+        SegmentIdGenerator generator = new SegmentIdGenerator(store, "order", 1000);
+        for (long i = 0; i < 10_000; i++) {
+            Assert.assertEquals(i, generator.nextID());
+            if (i % 1000 == 500) {
+                // 给后台预取留出时间, 模拟真实的业务间隔
+                waitForPrefetch(store, i / 1000 + 2);
+            }
+        }
+        System.out.println(generator);
+        Assert.assertEquals(0, store.syncLeases.get());
+    }
+
+    /**
+     * 多线程: ID不重复
+     */
+    @Test
+    public void test02() throws Exception {
+        SegmentIdGenerator generator = new SegmentIdGenerator(new CountingStore(), "order", 100);
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] futures = new Future<?>[threads];
+        long[][] ids = new long[threads][50_000];
+        for (int i = 0; i < threads; i++) {
+            long[] dst = ids[i];
+            futures[i] = executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < dst.length; j++) {
+                    dst[j] = generator.nextID();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Set<Long> set = new HashSet<>();
+        for (long[] dst : ids) {
+            for (int j = 0; j < dst.length; j++) {
+                Assert.assertTrue("生成重复ID了,id=" + dst[j], set.add(dst[j]));
+                Assert.assertTrue("同一个线程内ID不是递增的", j == 0 || dst[j] > dst[j - 1]);
+            }
+        }
+    }
+
+    /**
+     * 基于文件的号段存储: 重启以后从上一次租用的最大ID之后继续分配
+     */
+    @Test
+    public void test03() throws IOException {
+        Path directory = Files.createTempDirectory("segment");
+        Path path = directory.resolve("user.segment");
+        try {
+            long last = 0;
+            for (int restart = 0; restart < 3; restart++) {
+                // 在调用方线程中预取, 测试结束删除目录时不会有后台线程还在写文件
+                SegmentIdGenerator generator = new SegmentIdGenerator(new FileSegmentStore(directory), "user", 100,
+                        0.2, Runnable::run);
+                for (int i = 0; i < 250; i++) {
+                    long id = generator.nextID();
+                    Assert.assertTrue(restart + i == 0 || id > last);
+                    last = id;
+                }
+                System.out.println("重启" + restart + "次后: " + generator);
+            }
+            System.out.println(new String(Files.readAllBytes(path)).trim());
+        } finally {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * 基于文件的号段存储: 业务标识不能跳出号段目录
+     */
+    @Test
+    public void test04() throws IOException {
+        Path directory = Files.createTempDirectory("segment");
+        try {
+            FileSegmentStore store = new FileSegmentStore(directory);
+            for (String bizTag : new String[]{"", "../user", "a/user", directory.resolveSibling("user").toString()}) {
+                try {
+                    store.lease(bizTag, 100);
+                    Assert.fail("非法的业务标识: " + bizTag);
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+            Assert.assertFalse(Files.exists(directory.resolveSibling("user.segment")));
+            try (Stream<Path> files = Files.list(directory)) {
+                Assert.assertEquals(0, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+
+        // 相对路径表示的当前目录也可以正常使用
+        String bizTag = "segment-test-" + System.nanoTime();
+        Path path = Paths.get(bizTag + ".segment");
+        try {
+            FileSegmentStore store = new FileSegmentStore(Paths.get(""));
+            Assert.assertEquals(0, store.lease(bizTag, 100).next());
+            Assert.assertEquals(100, new FileSegmentStore(Paths.get(".")).lease(bizTag, 100).next());
+            Assert.assertTrue(Files.exists(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static void waitForPrefetch(CountingStore store, long leases) {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (store.leases.get() < leases && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 内存中的号段存储, 统计租用的次数, 以及在调用方线程中同步租用的次数
+     */
+    private static class CountingStore implements ISegmentStore {
+        final AtomicLong maxId = new AtomicLong();
+        final AtomicInteger leases = new AtomicInteger();
+        final AtomicInteger syncLeases = new AtomicInteger();
+        final Thread owner = Thread.currentThread();
+
+        @Override
+        public Segment lease(String bizTag, int step) {
+            if (leases.getAndIncrement() > 0 && Thread.currentThread() == owner) {
+                syncLeases.incrementAndGet();
+            }
+            long end = maxId.addAndGet(step);
+            return new Segment(end - step, end);
+        }
+    }
+}
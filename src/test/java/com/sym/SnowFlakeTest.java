@@ -1,11 +1,23 @@
 package com.sym;
 
+import com.sym.algorithm.example.snowflake.AtomicSnowFlake;
+import com.sym.algorithm.example.snowflake.BufferedIdGenerator;
+import com.sym.algorithm.example.snowflake.IIdGenerator;
+import com.sym.algorithm.example.snowflake.SnowFlakeId;
+import com.sym.algorithm.example.snowflake.SnowFlakeLayout;
 import com.sym.algorithm.example.snowflake.SymSnowFlake;
+import com.sym.algorithm.example.snowflake.WaitStrategy;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * 1、请记住：-1的二进制为：11111111111111111111111111111111,任何跟-1做异或运算(^),都相当于对其取非(~)
@@ -146,6 +158,235 @@ public class SnowFlakeTest {
         System.out.println(2 & 4);
     }
 
+    /**
+     * 多线程环境下对比加锁和无锁的雪花算法: 吞吐量, 以及ID的唯一性和单个线程内的单调性.
+     * 注意12位序列号决定了单个生成器每毫秒最多生成4096个ID, 吞吐量不会超过这个上限
+     */
+    @Test
+    public void testSeven() throws Exception {
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            System.out.println("线程数: " + threads
+                    + ", synchronized: " + benchmark(() -> new SymSnowFlake(0, 0), threads, 200_000) + " ops/ms"
+                    + ", CAS: " + benchmark(() -> new AtomicSnowFlake(0, 0), threads, 200_000) + " ops/ms");
+        }
+    }
+
+    /**
+     * 批量生成ID: 一次生成的数量超过4096个时会借用后面的毫秒数, 之后单个生成的ID依然要比批量的大
+     */
+    @Test
+    public void testEight() {
+        SymSnowFlake symSnowFlake = new SymSnowFlake(0, 0);
+        long first = symSnowFlake.nextID();
+        long[] ids = symSnowFlake.nextIDs(10_000);
+        Assert.assertTrue(ids[0] > first);
+        for (int i = 1; i < ids.length; i++) {
+            Assert.assertTrue("批量生成的ID不是递增的", ids[i] > ids[i - 1]);
+        }
+        long last = ids[ids.length - 1];
+        for (int i = 0; i < 10_000; i++) {
+            long id = symSnowFlake.nextID();
+            Assert.assertTrue("单个生成的ID比批量生成的小", id > last);
+            last = id;
+        }
+        Assert.assertEquals(0, symSnowFlake.nextIDs(0).length);
+
+        int total = 4_000_000;
+        long[] dst = new long[1000];
+        long start = System.nanoTime();
+        for (int i = 0; i < total / dst.length; i++) {
+            symSnowFlake.nextIDs(dst);
+        }
+        long batch = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            symSnowFlake.nextID();
+        }
+        long single = System.nanoTime() - start;
+        System.out.println("批量生成" + total + "个ID耗时: " + batch / 1_000_000 + "ms, 逐个生成耗时: " + single / 1_000_000 + "ms");
+    }
+
+    /**
+     * 时钟回拨: 容忍范围内继续生成递增的ID, 超出容忍范围则拒绝生成
+     */
+    @Test
+    public void testNine() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        SymSnowFlake symSnowFlake = new SymSnowFlake(0, 0, WaitStrategy.PARK, 5, clock::get);
+        long last = symSnowFlake.nextID();
+        clock.addAndGet(-3);
+        for (int i = 0; i < 10_000; i++) {
+            long id = symSnowFlake.nextID();
+            Assert.assertTrue("时钟回拨后ID不是递增的", id > last);
+            last = id;
+        }
+        clock.addAndGet(-100);
+        try {
+            symSnowFlake.nextID();
+            Assert.fail("时钟回拨超过容忍值时应该拒绝生成ID");
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * 不同的等待策略下, 序列号用完时等待下一毫秒的耗时
+     */
+    @Test
+    public void testTen() {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            SymSnowFlake symSnowFlake = new SymSnowFlake(0, 0, waitStrategy, 0, System::currentTimeMillis);
+            long last = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < 100_000; i++) {
+                long id = symSnowFlake.nextID();
+                Assert.assertTrue(id > last);
+                last = id;
+            }
+            System.out.println(waitStrategy + ": " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        }
+    }
+
+    /**
+     * 按线程缓冲的生成器和加锁的生成器对比吞吐量, 并校验唯一性和每个线程内的单调性
+     */
+    @Test
+    public void testEleven() throws Exception {
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            System.out.println("线程数: " + threads
+                    + ", synchronized: " + benchmark(() -> new SymSnowFlake(0, 0), threads, 200_000) + " ops/ms"
+                    + ", ThreadLocal: " + benchmark(() -> new BufferedIdGenerator(new SymSnowFlake(0, 0)), threads, 200_000) + " ops/ms");
+        }
+    }
+
+    /**
+     * 自定义位布局, 并把ID解析回各个组成部分
+     */
+    @Test
+    public void testTwelve() {
+        long before = System.currentTimeMillis();
+        SymSnowFlake symSnowFlake = new SymSnowFlake(3, 17);
+        SnowFlakeId decoded = symSnowFlake.getLayout().decode(symSnowFlake.nextID());
+        System.out.println(decoded);
+        Assert.assertTrue(decoded.getTimeStamp() >= before && decoded.getTimeStamp() <= System.currentTimeMillis());
+        Assert.assertEquals(3, decoded.getDataCenter());
+        Assert.assertEquals(17, decoded.getMachineCode());
+        Assert.assertEquals(0, decoded.getSerialNumber());
+
+        // 减少数据中心的位数, 支持更多的机器和更高的单机并发
+        SnowFlakeLayout layout = SnowFlakeLayout.builder()
+                .timeStampBits(40)
+                .dataCenterBits(2)
+                .machineCodeBits(7)
+                .serialNumberBits(14)
+                .epoch(before)
+                .build();
+        AtomicSnowFlake atomicSnowFlake = new AtomicSnowFlake(layout, 3, 127);
+        long[] ids = new long[20_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = atomicSnowFlake.nextID();
+        }
+        for (int i = 1; i < ids.length; i++) {
+            Assert.assertTrue(ids[i] > ids[i - 1]);
+            decoded = layout.decode(ids[i]);
+            Assert.assertEquals(3, decoded.getDataCenter());
+            Assert.assertEquals(127, decoded.getMachineCode());
+        }
+        System.out.println(layout.decode(ids[ids.length - 1]));
+
+        try {
+            new AtomicSnowFlake(layout, 4, 0);
+            Assert.fail("数据中心超出了2位能表示的范围");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+        try {
+            SnowFlakeLayout.builder().timeStampBits(42).build();
+            Assert.fail("所有字段的位数之和超过了63位");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * 借用的时间戳超前系统时间超过上限以后, 批量生成和单个生成都要等待系统时间追上来
+     */
+    @Test
+    public void testThirteen() {
+        long base = System.currentTimeMillis();
+        long maxLeadMillis = 2;
+        // 每读8次时钟才走1毫秒, 远远跟不上序列号用完的速度
+        AtomicLong reads = new AtomicLong();
+        SymSnowFlake symSnowFlake = new SymSnowFlake(SnowFlakeLayout.DEFAULT, 0, 0, WaitStrategy.SPIN, 0,
+                maxLeadMillis, () -> base + reads.getAndIncrement() / 8);
+        SnowFlakeLayout layout = symSnowFlake.getLayout();
+
+        // 不限制的话, 一次批量生成就要借用256毫秒
+        long[] ids = symSnowFlake.nextIDs(1 << 20);
+        for (int i = 1; i < ids.length; i++) {
+            Assert.assertTrue(ids[i] > ids[i - 1]);
+        }
+        long lead = layout.decode(ids[ids.length - 1]).getTimeStamp() - (base + (reads.get() - 1) / 8);
+        Assert.assertTrue("借用的时间戳超前了" + lead + "ms", lead <= maxLeadMillis);
+        Assert.assertTrue("没有触发借用的上限", reads.get() > 8 * 200);
+
+        long last = ids[ids.length - 1];
+        for (int i = 0; i < 20_000; i++) {
+            long id = symSnowFlake.nextID();
+            Assert.assertTrue(id > last);
+            lead = layout.decode(id).getTimeStamp() - (base + (reads.get() - 1) / 8);
+            Assert.assertTrue("借用的时间戳超前了" + lead + "ms", lead <= maxLeadMillis);
+            last = id;
+        }
+
+        try {
+            new SymSnowFlake(SnowFlakeLayout.DEFAULT, 0, 0, WaitStrategy.SPIN, 0, -1, System::currentTimeMillis);
+            Assert.fail("借用时间戳的上限不能小于0");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * 多个线程同时生成ID, 校验唯一性和每个线程内的单调性
+     *
+     * @return 每毫秒生成的ID个数
+     */
+    private long benchmark(Supplier<IIdGenerator> factory, int threads, int idsPerThread) throws Exception {
+        IIdGenerator generator = factory.get();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] futures = new Future<?>[threads];
+        long[][] ids = new long[threads][idsPerThread];
+        for (int i = 0; i < threads; i++) {
+            long[] dst = ids[i];
+            futures[i] = executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < dst.length; j++) {
+                    dst[j] = generator.nextID();
+                }
+                return null;
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = Math.max(1, System.nanoTime() - begin);
+        executor.shutdown();
+        Set<Long> set = new HashSet<>(threads * idsPerThread * 2);
+        for (long[] dst : ids) {
+            for (int j = 0; j < dst.length; j++) {
+                Assert.assertTrue("生成重复ID了,id=" + dst[j], set.add(dst[j]));
+                Assert.assertTrue("同一个线程内ID不是递增的", j == 0 || dst[j] > dst[j - 1]);
+            }
+        }
+        return (long) threads * idsPerThread * 1_000_000 / elapsed;
+    }
+
     private void printBinaryString(int val) {
         System.out.println(Integer.toBinaryString(val));
     }
@@ -4,11 +4,14 @@ import com.sym.algorithm.example.sort.AbstractIntegerSort;
 import com.sym.algorithm.example.sort.ISort;
 import com.sym.algorithm.example.sort.impl.*;
 import com.sym.util.ArrayUtil;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 排序算法测试
@@ -121,6 +124,49 @@ public class SortTest {
         doSort(new RadixSort(copy()));
     }
 
+    /**
+     * 双轴快速排序
+     */
+    @Test
+    public void dualPivotQuickSort() {
+        doSort(new DualPivotQuickSort(copy()));
+        doSort(new DualPivotQuickSort(copy(), true));
+    }
+
+    /**
+     * 双轴快速排序: 各种数据分布下的结果都和{@link Arrays#sort(int[])}一致
+     */
+    @Test
+    public void dualPivotQuickSortCorrectness() {
+        Random random = new Random(25);
+        // 测试环境可能只有一个CPU, 公共线程池会直接退化为串行排序, 这里指定线程数, 保证走到拆分子任务的逻辑
+        ForkJoinPool pool = new ForkJoinPool(4);
+        int[] lengths = {0, 1, 2, 31, 32, 33, 100, 1023, 1024, 5000, 8192, 100_000, 1_000_000};
+        for (int length : lengths) {
+            int[][] inputs = new int[6][length];
+            for (int i = 0; i < length; i++) {
+                // 随机, 大量重复, 有序, 逆序, 全部相同, 锯齿
+                inputs[0][i] = random.nextInt();
+                inputs[1][i] = random.nextInt(4);
+                inputs[2][i] = i;
+                inputs[3][i] = length - i;
+                inputs[4][i] = 7;
+                inputs[5][i] = i % 64 == 0 ? Integer.MIN_VALUE : i % 64;
+            }
+            for (int[] input : inputs) {
+                int[] expected = Arrays.copyOf(input, length);
+                Arrays.sort(expected);
+                int[] actual = Arrays.copyOf(input, length);
+                DualPivotQuickSort.sort(actual);
+                Assert.assertArrayEquals(expected, actual);
+                actual = Arrays.copyOf(input, length);
+                DualPivotQuickSort.parallelSort(actual, pool);
+                Assert.assertArrayEquals(expected, actual);
+            }
+        }
+        pool.shutdown();
+    }
+
     // 执行排序
     private void doSort(ISort<?> sort) {
         sort.sort();